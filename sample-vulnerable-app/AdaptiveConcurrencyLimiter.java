@@ -0,0 +1,322 @@
+import okhttp3.*;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AIMD limit on the number of GitHub API calls in flight.
+ *
+ * A fixed thread count is either too timid or trips GitHub's secondary rate
+ * limits, depending on how busy the API is. This interceptor adjusts the
+ * limit itself:
+ *   - additive increase: every successful call while the limit is actually
+ *     in use adds 1/limit, so the limit grows by about one per round trip
+ *   - multiplicative decrease: a 429, a rate-limited 403 (Retry-After or
+ *     X-RateLimit-Remaining: 0), or a window whose p50 latency has risen
+ *     well above the no-load baseline cuts the limit
+ *
+ * A call holds its slot until its response body is closed, so a slow body
+ * counts against the limit, and the latency sample runs from sending the
+ * request to closing the body. That includes the time the caller spends on
+ * the body, which is deliberate: more calls in flight than the callers can
+ * consume only hold more connections open.
+ *
+ * Calls sent with execute() wait for a slot in the interceptor, on the
+ * calling thread; a call that cannot get one within the queue timeout fails
+ * and is counted as a rejection. Calls sent with enqueue() must get their
+ * slot from admit() first. Waiting inside the interceptor would park an
+ * OkHttp dispatcher thread, and a waiting thread that still holds the slot
+ * of an open page (a stream prefetching its next page) could wait forever.
+ * admit() never blocks: it completes when a slot is free, and a caller
+ * whose admitted call fails before it is sent hands the slot back with
+ * abandon().
+ *
+ * Tuning via system properties:
+ *   ghas.http.initialConcurrency   starting limit (default 8)
+ *   ghas.http.maxConcurrency       upper bound for the limit (default 64)
+ *   ghas.http.queueTimeoutSeconds  wait for a slot before rejecting (default 60)
+ */
+public class AdaptiveConcurrencyLimiter implements Interceptor {
+
+    public static final int MIN_LIMIT = 1;
+
+    /** Latency samples per p50 window */
+    private static final int WINDOW_SIZE = 50;
+
+    /** A window p50 above baseline times this factor counts as overload */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    private static final double OVERLOAD_BACKOFF = 0.5;
+    private static final double LATENCY_BACKOFF = 0.8;
+
+    private static AdaptiveConcurrencyLimiter defaultLimiter;
+
+    private final int maxLimit;
+    private final long queueTimeoutMillis;
+
+    private double limit;
+    private int inFlight;
+    /** admit() calls waiting for a slot, oldest first */
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+    private final long[] window = new long[WINDOW_SIZE];
+    private int windowCount;
+    /** No-load p50 estimate; drops immediately, rises slowly */
+    private long baselineNanos;
+    private long lastWindowP50Nanos;
+
+    private final AtomicLong rejections = new AtomicLong();
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit, long queueTimeoutMillis) {
+        if (initialLimit < MIN_LIMIT || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Invalid limits: initial " + initialLimit + ", max " + maxLimit);
+        }
+        this.limit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    /**
+     * Process-wide limiter used by GitHubHttpTransport
+     */
+    public static synchronized AdaptiveConcurrencyLimiter getDefault() {
+        if (defaultLimiter == null) {
+            defaultLimiter = new AdaptiveConcurrencyLimiter(
+                Integer.getInteger("ghas.http.initialConcurrency", 8),
+                Integer.getInteger("ghas.http.maxConcurrency", 64),
+                TimeUnit.SECONDS.toMillis(Long.getLong("ghas.http.queueTimeoutSeconds", 60L)));
+        }
+        return defaultLimiter;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Slot slot = request.tag(Slot.class);
+        if (slot == null) {
+            slot = acquire();
+        }
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            release(slot, System.nanoTime() - start, false, false);
+            throw e;
+        }
+
+        boolean overloaded = isOverloaded(response);
+        ResponseBody body = response.body();
+        if (body == null) {
+            release(slot, System.nanoTime() - start, true, overloaded);
+            return response;
+        }
+        Slot held = slot;
+        ForwardingSource releasing = new ForwardingSource(body.source()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    release(held, System.nanoTime() - start, true, overloaded);
+                }
+            }
+        };
+        return response.newBuilder()
+            .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(releasing)))
+            .build();
+    }
+
+    /**
+     * Reserve a slot for a call that will be sent with enqueue(). The future
+     * completes with the request marked as holding the slot once one is
+     * free, or fails with a rejection after the queue timeout. Never blocks.
+     */
+    public CompletableFuture<Request> admit(Request request) {
+        CompletableFuture<Request> admitted = new CompletableFuture<>();
+        Waiter waiter = new Waiter(request, admitted, System.currentTimeMillis() + queueTimeoutMillis);
+        synchronized (this) {
+            waiters.addLast(waiter);
+        }
+        admitWaiters();
+        return admitted;
+    }
+
+    /**
+     * Give back the slot of an admitted request whose call failed or was
+     * cancelled before it reached the interceptor. Does nothing for a
+     * request whose slot was already released.
+     */
+    public void abandon(Request request) {
+        Slot slot = request.tag(Slot.class);
+        if (slot != null) {
+            release(slot, 0, false, false);
+        }
+    }
+
+    /** Current concurrency limit, rounded down */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /** Calls that gave up waiting for a slot */
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /** p50 latency of the last complete window, in milliseconds */
+    public synchronized double getLatencyP50Millis() {
+        return lastWindowP50Nanos / 1e6;
+    }
+
+    /**
+     * One-line summary for tool output
+     */
+    public synchronized String stats() {
+        return String.format("Concurrency: limit %d, in flight %d, rejected %d, p50 %.0f ms (baseline %.0f ms)",
+            (int) limit, inFlight, rejections.get(), lastWindowP50Nanos / 1e6, baselineNanos / 1e6);
+    }
+
+    private synchronized Slot acquire() throws IOException {
+        long deadline = System.currentTimeMillis() + queueTimeoutMillis;
+        try {
+            while (inFlight >= (int) limit || !waiters.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    rejections.incrementAndGet();
+                    throw new IOException("Concurrency limit of " + (int) limit + " reached, request rejected");
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a concurrency slot");
+        }
+        inFlight++;
+        return new Slot();
+    }
+
+    private void release(Slot slot, long latencyNanos, boolean completed, boolean overloaded) {
+        if (!slot.released.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this) {
+            boolean saturated = inFlight >= limit / 2;
+            inFlight--;
+
+            if (overloaded) {
+                decrease(OVERLOAD_BACKOFF);
+            } else if (completed) {
+                if (recordLatency(latencyNanos)) {
+                    decrease(LATENCY_BACKOFF);
+                } else if (saturated) {
+                    // Only grow while the limit is what holds callers back
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            notifyAll();
+        }
+        admitWaiters();
+    }
+
+    /**
+     * Hand free slots to waiting admit() calls, oldest first, and reject the
+     * ones past their timeout. Futures are completed outside the lock, as
+     * completing one enqueues the call.
+     */
+    private void admitWaiters() {
+        List<Runnable> completions = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            waiters.removeIf(waiter -> {
+                if (now < waiter.deadline) {
+                    return false;
+                }
+                rejections.incrementAndGet();
+                completions.add(() -> waiter.admitted.completeExceptionally(
+                    new IOException("Concurrency limit of " + (int) limit + " reached, request rejected")));
+                return true;
+            });
+            while (!waiters.isEmpty() && inFlight < (int) limit) {
+                Waiter waiter = waiters.pollFirst();
+                inFlight++;
+                Request admitted = waiter.request.newBuilder().tag(Slot.class, new Slot()).build();
+                completions.add(() -> waiter.admitted.complete(admitted));
+            }
+            if (waiters.isEmpty()) {
+                // Blocked execute() callers step aside while admitted calls are waiting
+                notifyAll();
+            }
+        }
+        completions.forEach(Runnable::run);
+    }
+
+    /**
+     * Add a sample; returns true when it closes a window whose p50 shows
+     * the API slowing down under our load
+     */
+    private boolean recordLatency(long latencyNanos) {
+        window[windowCount++] = latencyNanos;
+        if (windowCount < WINDOW_SIZE) {
+            return false;
+        }
+
+        windowCount = 0;
+        long[] sorted = window.clone();
+        Arrays.sort(sorted);
+        long p50 = sorted[WINDOW_SIZE / 2];
+        lastWindowP50Nanos = p50;
+
+        if (baselineNanos == 0 || p50 < baselineNanos) {
+            baselineNanos = p50;
+            return false;
+        }
+        // Let the baseline follow slow, lasting shifts (e.g. a larger page size)
+        baselineNanos += (p50 - baselineNanos) / 20;
+        return p50 > baselineNanos * LATENCY_TOLERANCE;
+    }
+
+    private void decrease(double factor) {
+        limit = Math.max(MIN_LIMIT, limit * factor);
+    }
+
+    /** A slot taken by one call, released exactly once */
+    private static final class Slot {
+        final AtomicBoolean released = new AtomicBoolean();
+    }
+
+    private static final class Waiter {
+        final Request request;
+        final CompletableFuture<Request> admitted;
+        final long deadline;
+
+        Waiter(Request request, CompletableFuture<Request> admitted, long deadline) {
+            this.request = request;
+            this.admitted = admitted;
+            this.deadline = deadline;
+        }
+    }
+
+    private static boolean isOverloaded(Response response) {
+        if (response.code() == 429) {
+            return true;
+        }
+        // A plain 403 is a permission problem; only rate-limit 403s mean back off
+        return response.code() == 403 &&
+            (response.header("Retry-After") != null || "0".equals(response.header("X-RateLimit-Remaining")));
+    }
+}
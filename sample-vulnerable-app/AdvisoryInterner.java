@@ -0,0 +1,185 @@
+import com.github.security.ghas.model.SecurityAdvisory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Canonicalizes SecurityAdvisory instances by GHSA ID during deserialization.
+ *
+ * The same advisory (Log4Shell, say) is embedded in every Dependabot alert
+ * it affects, summary and description included. With the interner
+ * registered on an ObjectMapper, the first alert for a GHSA ID binds its
+ * advisory as usual and caches it; later alerts get the cached instance.
+ * GitHub sends ghsa_id as the first field of security_advisory, so on a
+ * hit the rest of the advisory is skipped without being bound or buffered.
+ * Heap and binding time then grow with the number of distinct advisories,
+ * not with the number of alerts.
+ *
+ * The cache is an LRU bounded by entry count. Interned advisories are shared
+ * between alerts and must be treated as read-only.
+ */
+public class AdvisoryInterner {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private static final String GHSA_ID = "ghsa_id";
+
+    private static AdvisoryInterner defaultInterner;
+
+    private final Map<String, SecurityAdvisory> advisories;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public AdvisoryInterner(int maxEntries) {
+        this.advisories = new LinkedHashMap<String, SecurityAdvisory>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SecurityAdvisory> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Process-wide interner, shared by every mapper it is registered on
+     */
+    public static synchronized AdvisoryInterner getDefault() {
+        if (defaultInterner == null) {
+            defaultInterner = new AdvisoryInterner(DEFAULT_MAX_ENTRIES);
+        }
+        return defaultInterner;
+    }
+
+    /**
+     * Make the mapper intern every SecurityAdvisory it deserializes
+     */
+    public ObjectMapper register(ObjectMapper mapper) {
+        SimpleModule module = new SimpleModule("AdvisoryInterner");
+        module.setDeserializerModifier(new BeanDeserializerModifier() {
+            @Override
+            public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc,
+                                                          JsonDeserializer<?> deserializer) {
+                if (SecurityAdvisory.class.isAssignableFrom(beanDesc.getBeanClass())) {
+                    return new InterningDeserializer(deserializer, AdvisoryInterner.this);
+                }
+                return deserializer;
+            }
+        });
+        return mapper.registerModule(module);
+    }
+
+    /** Advisories served from the cache */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** Advisories bound in full */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return advisories.size();
+    }
+
+    /**
+     * One-line summary for tool output
+     */
+    public String stats() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return "Advisory interner: " + size() + " unique advisories, " + hitCount + " of " + total +
+            " advisories shared (" + (total == 0 ? 0 : hitCount * 100 / total) + "%)";
+    }
+
+    private synchronized SecurityAdvisory lookup(String ghsaId) {
+        return advisories.get(ghsaId);
+    }
+
+    /**
+     * Cache a freshly bound advisory, or return the one another thread cached first
+     */
+    private synchronized SecurityAdvisory intern(String ghsaId, SecurityAdvisory advisory) {
+        SecurityAdvisory existing = advisories.putIfAbsent(ghsaId, advisory);
+        return existing != null ? existing : advisory;
+    }
+
+    /**
+     * Wraps the bean deserializer of SecurityAdvisory. Fields are buffered
+     * only until ghsa_id is seen; a cache hit skips the remainder.
+     */
+    private static class InterningDeserializer extends DelegatingDeserializer {
+        private static final long serialVersionUID = 1L;
+
+        private final transient AdvisoryInterner interner;
+
+        InterningDeserializer(JsonDeserializer<?> delegatee, AdvisoryInterner interner) {
+            super(delegatee);
+            this.interner = interner;
+        }
+
+        @Override
+        protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+            return new InterningDeserializer(newDelegatee, interner);
+        }
+
+        @Override
+        public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartObjectToken()) {
+                return _delegatee.deserialize(p, ctxt);
+            }
+
+            TokenBuffer buffer = new TokenBuffer(p, ctxt);
+            buffer.writeStartObject();
+            String ghsaId = null;
+
+            for (JsonToken token = p.nextToken(); token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+                if (ghsaId == null && GHSA_ID.equals(p.getCurrentName()) && p.nextToken() == JsonToken.VALUE_STRING) {
+                    ghsaId = p.getText();
+                    SecurityAdvisory cached = interner.lookup(ghsaId);
+                    if (cached != null) {
+                        interner.hits.incrementAndGet();
+                        skipToEndOfObject(p);
+                        return cached;
+                    }
+                    buffer.writeFieldName(GHSA_ID);
+                    buffer.writeString(ghsaId);
+                } else if (p.currentToken() == JsonToken.FIELD_NAME) {
+                    buffer.copyCurrentStructure(p);
+                } else {
+                    // ghsa_id with a non-string value; the name was consumed above
+                    buffer.writeFieldName(GHSA_ID);
+                    buffer.copyCurrentStructure(p);
+                }
+            }
+            buffer.writeEndObject();
+
+            JsonParser buffered = buffer.asParser(p.getCodec());
+            buffered.nextToken();
+            SecurityAdvisory advisory = (SecurityAdvisory) _delegatee.deserialize(buffered, ctxt);
+            buffered.close();
+
+            interner.misses.incrementAndGet();
+            return ghsaId != null ? interner.intern(ghsaId, advisory) : advisory;
+        }
+
+        private static void skipToEndOfObject(JsonParser p) throws IOException {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                p.nextToken();
+                p.skipChildren();
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+import com.github.security.ghas.model.*;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Incremental alert sync against a local per-repository snapshot.
+ *
+ * The snapshot stores every alert of a repository (raw JSON, keyed by alert
+ * number) together with a high-water mark per category: the latest
+ * updated_at seen. A sync requests the alerts sorted by updated_at,
+ * newest first, and stops reading as soon as it reaches an alert older than
+ * the mark. Only the changed alerts are merged into the snapshot, so after
+ * the first run a repository with no activity costs a single page request
+ * per category. That page is a free 304 from ConditionalRequestCache when
+ * the credential has a stable cache identity: the same personal access
+ * token, or an installation token from InstallationTokenCache, which keys
+ * the entries by installation rather than by the hourly token.
+ *
+ * Any state change (dismissed, fixed, reopened) bumps updated_at, so merged
+ * alerts always carry their current state. Alerts that GitHub deletes
+ * outright stay in the snapshot.
+ *
+ * Snapshots live in ~/.ghas/snapshots/{owner}/{repo}.json.
+ */
+public class AlertDeltaSync {
+
+    private static final String DEPENDABOT = "dependabot";
+    private static final String SECRET_SCANNING = "secret-scanning";
+    private static final String CODE_SCANNING = "code-scanning";
+
+    private final GHASAlertStreams streams;
+    private final File directory;
+    private final ObjectMapper mapper;
+
+    public AlertDeltaSync(String token) throws IOException {
+        this(new GHASAlertStreams(token), defaultDirectory());
+    }
+
+    public AlertDeltaSync(GHASAlertStreams streams, File directory) {
+        this.streams = streams;
+        this.directory = directory;
+        this.mapper = new ObjectMapper();
+        this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        AdvisoryInterner.getDefault().register(this.mapper);
+    }
+
+    public static File defaultDirectory() {
+        return new File(System.getProperty("user.home"), ".ghas" + File.separator + "snapshots");
+    }
+
+    /**
+     * Bring the snapshot of a repository up to date and return all of its
+     * alerts. A category that fails keeps its previous snapshot and is
+     * reported through the category error, as with RepositoryAlerts.fetch.
+     */
+    public RepositoryAlerts sync(String owner, String repo) {
+        File file = snapshotFile(owner, repo);
+        ObjectNode snapshot = load(file);
+        snapshot.put("owner", owner);
+        snapshot.put("repo", repo);
+
+        String base = "/repos/" + owner + "/" + repo;
+        RepositoryAlerts alerts = new RepositoryAlerts(owner, repo);
+
+        try {
+            List<JsonNode> json = syncCategory(snapshot, DEPENDABOT, base + "/dependabot/alerts");
+            alerts.setDependabotAlerts(bindAll(json, DependabotAlert.class));
+            alerts.setAlertJson(AlertStore.Category.DEPENDABOT, json);
+        } catch (Exception e) {
+            alerts.setDependabotError(e.getMessage());
+        }
+
+        try {
+            List<JsonNode> json = syncCategory(snapshot, SECRET_SCANNING, base + "/secret-scanning/alerts");
+            alerts.setSecretScanningAlerts(bindAll(json, SecretScanningAlert.class));
+            alerts.setAlertJson(AlertStore.Category.SECRET_SCANNING, json);
+        } catch (Exception e) {
+            alerts.setSecretScanningError(e.getMessage());
+        }
+
+        try {
+            List<JsonNode> json = syncCategory(snapshot, CODE_SCANNING, base + "/code-scanning/alerts");
+            alerts.setCodeScanningAlerts(bindAll(json, CodeScanningAlert.class));
+            alerts.setAlertJson(AlertStore.Category.CODE_SCANNING, json);
+        } catch (Exception e) {
+            alerts.setCodeScanningError(e.getMessage());
+        }
+
+        save(file, snapshot);
+        return alerts;
+    }
+
+    /**
+     * Merge alerts updated since the category's high-water mark and return
+     * the full, merged list as API JSON
+     */
+    private List<JsonNode> syncCategory(ObjectNode snapshot, String category, String path) throws IOException {
+        ObjectNode state = snapshot.with(category);
+        Instant since = parseTime(state.path("highWaterMark").asText(null));
+        Instant newest = since;
+
+        // Merge into a copy so a failure halfway leaves the stored state consistent
+        ObjectNode merged = state.with("alerts").deepCopy();
+
+        try (Stream<JsonNode> updates = streams.stream(path + "?sort=updated&direction=desc", JsonNode.class)) {
+            Iterator<JsonNode> newestFirst = updates.iterator();
+            while (newestFirst.hasNext()) {
+                JsonNode alert = newestFirst.next();
+                Instant updated = parseTime(alert.path("updated_at").asText(null));
+                if (since != null && updated != null && updated.isBefore(since)) {
+                    // Everything after this one is older still and already in the snapshot
+                    break;
+                }
+                merged.set(alert.path("number").asText(), alert);
+                if (updated != null && (newest == null || updated.isAfter(newest))) {
+                    newest = updated;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        state.set("alerts", merged);
+        if (newest != null) {
+            state.put("highWaterMark", newest.toString());
+        }
+
+        List<JsonNode> alerts = new ArrayList<>(merged.size());
+        merged.forEach(alerts::add);
+        return alerts;
+    }
+
+    private <T> List<T> bindAll(List<JsonNode> json, Class<T> type) throws IOException {
+        List<T> alerts = new ArrayList<>(json.size());
+        for (JsonNode alert : json) {
+            alerts.add(mapper.treeToValue(alert, type));
+        }
+        return alerts;
+    }
+
+    private ObjectNode load(File file) {
+        if (file.exists()) {
+            try {
+                JsonNode stored = mapper.readTree(file);
+                if (stored instanceof ObjectNode) {
+                    return (ObjectNode) stored;
+                }
+            } catch (IOException e) {
+                // A corrupt snapshot is rebuilt by a full sync
+                System.err.println("Ignoring unreadable snapshot " + file + ": " + e.getMessage());
+            }
+        }
+        return mapper.createObjectNode();
+    }
+
+    private void save(File file, ObjectNode snapshot) {
+        File temp = null;
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            // A temp file of its own, so concurrent syncs of the repository never write into each other's
+            temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp").toFile();
+            mapper.writeValue(temp, snapshot);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The snapshot is best effort, the next run just syncs from the old mark
+            System.err.println("Could not save snapshot " + file + ": " + e.getMessage());
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private File snapshotFile(String owner, String repo) {
+        return new File(new File(directory, owner), repo + ".json");
+    }
+
+    private static Instant parseTime(String timestamp) {
+        if (timestamp == null || timestamp.isEmpty()) {
+            return null;
+        }
+        try {
+            return Instant.parse(timestamp);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Token-streaming decoder for alert list pages.
+ *
+ * A page is a JSON array of alert objects. Instead of materialising the
+ * response as a String and binding the whole array into a List, the decoder
+ * walks the array with a JsonParser straight off the response stream and
+ * binds one element at a time. Only the alert currently being handed to the
+ * caller is alive, so apart from the parser's and socket's fixed-size
+ * buffers, peak heap per page is one alert rather than the page. That
+ * holds on the shared transport too: ConditionalRequestCache copies bodies
+ * to disk as they stream past instead of buffering them, and replays 304s
+ * from the cache file.
+ *
+ * decode() reads the first token, so call it from the thread that consumes
+ * the alerts, not from an OkHttp callback.
+ */
+public class AlertPageDecoder<T> {
+
+    private final JsonFactory factory;
+    private final ObjectReader reader;
+    private final String typeName;
+
+    public AlertPageDecoder(ObjectMapper mapper, Class<T> type) {
+        this(mapper, mapper.constructType(type));
+    }
+
+    /**
+     * Decoder for a generic element type, e.g. GHASAlertStreams.OrgAlert of an alert model
+     */
+    public AlertPageDecoder(ObjectMapper mapper, JavaType type) {
+        this.factory = mapper.getFactory();
+        this.typeName = typeName(type);
+        this.reader = mapper.readerFor(type).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /**
+     * Decode every alert of a page, handing each to the consumer as soon as it is bound
+     */
+    public int forEach(InputStream page, Consumer<? super T> consumer) throws IOException {
+        int count = 0;
+        try (Alerts<T> alerts = decode(page)) {
+            while (alerts.hasNext()) {
+                consumer.accept(alerts.next());
+                count++;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count;
+    }
+
+    /**
+     * Lazily decode a page. The iterator owns the stream and closes it when
+     * the array ends or when it is closed early.
+     */
+    public Alerts<T> decode(InputStream page) throws IOException {
+        JsonParser parser = factory.createParser(page);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IOException("Expected a JSON array of alerts, got " + parser.getCurrentToken());
+        }
+        return new Alerts<>(parser, reader, typeName);
+    }
+
+    private static String typeName(JavaType type) {
+        StringBuilder name = new StringBuilder(type.getRawClass().getSimpleName());
+        for (int i = 0; i < type.containedTypeCount(); i++) {
+            name.append(i == 0 ? '<' : ',').append(typeName(type.containedType(i)));
+        }
+        return type.containedTypeCount() > 0 ? name.append('>').toString() : name.toString();
+    }
+
+    /**
+     * Iterator over the elements of one page. The time spent binding its
+     * alerts is reported to GHASMetrics when the page is closed.
+     */
+    public static class Alerts<T> implements Iterator<T>, Closeable {
+        private final JsonParser parser;
+        private final ObjectReader reader;
+        private final String typeName;
+        private JsonToken token;
+        private boolean closed;
+        private long decodeNanos;
+        private int decoded;
+
+        Alerts(JsonParser parser, ObjectReader reader, String typeName) {
+            this.parser = parser;
+            this.reader = reader;
+            this.typeName = typeName;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (token == null) {
+                    token = parser.nextToken();
+                }
+                if (token == JsonToken.START_OBJECT) {
+                    return true;
+                }
+                if (token != JsonToken.END_ARRAY) {
+                    throw new IOException("Unexpected token in alert page: " + token);
+                }
+                close();
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long start = System.nanoTime();
+            try {
+                T alert = reader.readValue(parser);
+                token = null;
+                decodeNanos += System.nanoTime() - start;
+                decoded++;
+                return alert;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                if (decoded > 0) {
+                    GHASMetrics.getDefault().recordDecode(typeName, decodeNanos, decoded);
+                }
+                parser.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams reports to a file or stdout through a JsonGenerator.
+ *
+ * The tools used to build each report with writeValueAsString and print the
+ * String, so the whole pretty-printed document sat in memory next to the
+ * objects it was built from. Here every value is serialized straight into a
+ * buffered output stream, so the memory needed for the report itself does
+ * not grow with the number of alerts.
+ *
+ * Two formats:
+ *   JSON    each value written as a pretty-printed document, like INDENT_OUTPUT did;
+ *           a report file holds all of them in one array, so it parses as one document
+ *   NDJSON  one compact record per line; RepositoryAlerts and alert streams
+ *           become one line per alert, {"repository", "category", "alert"},
+ *           plus one {"repository", "category", "error"} line per failed category
+ *
+ * Files whose name ends in .gz are gzip compressed.
+ */
+public class AlertReportWriter implements Closeable {
+
+    public enum Format {
+        JSON,
+        NDJSON;
+
+        /**
+         * NDJSON for *.ndjson and *.ndjson.gz, JSON otherwise
+         */
+        public static Format forFile(File file) {
+            String name = file.getName().toLowerCase();
+            return name.endsWith(".ndjson") || name.endsWith(".ndjson.gz") ? NDJSON : JSON;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Format format;
+    private final JsonGenerator generator;
+    private final boolean flushEachValue;
+    private boolean inArray;
+    private long records;
+
+    /**
+     * @param flushEachValue flush after every value, for output interleaved with other console output
+     */
+    public AlertReportWriter(OutputStream out, Format format, boolean flushEachValue) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        // Flushing is decided here, not by the mapper after every nested value
+        mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        this.format = format;
+        this.flushEachValue = flushEachValue;
+        this.generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        if (format == Format.JSON) {
+            generator.setPrettyPrinter(new DefaultPrettyPrinter().withRootSeparator((SerializableString) null));
+        } else {
+            generator.setRootValueSeparator(null);
+        }
+    }
+
+    /**
+     * Report on stdout, flushed per value so it stays in order with println output.
+     * Closing the writer leaves System.out open.
+     */
+    public static AlertReportWriter toStdout(Format format) throws IOException {
+        AlertReportWriter writer = new AlertReportWriter(System.out, format, true);
+        writer.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return writer;
+    }
+
+    /**
+     * Report file in the format its name implies, gzip compressed for *.gz.
+     * A JSON file is one array of the written values, ended on close.
+     */
+    public static AlertReportWriter toFile(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out = file.getName().toLowerCase().endsWith(".gz")
+                ? new GZIPOutputStream(out, BUFFER_SIZE)
+                : new BufferedOutputStream(out, BUFFER_SIZE);
+            AlertReportWriter writer = new AlertReportWriter(out, Format.forFile(file), false);
+            if (writer.format == Format.JSON) {
+                writer.generator.writeStartArray();
+                writer.inArray = true;
+            }
+            return writer;
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Records written so far: values, plus one per alert or error line in NDJSON
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Write one value as its own document or array element (JSON) or line (NDJSON)
+     */
+    public void writeValue(Object value) throws IOException {
+        generator.writeObject(value);
+        endRecord();
+    }
+
+    /**
+     * Write a repository's alerts: the whole object in JSON, one line per
+     * alert and per failed category in NDJSON
+     */
+    public void write(RepositoryAlerts alerts) throws IOException {
+        if (format == Format.JSON) {
+            writeValue(alerts);
+            return;
+        }
+        String repository = alerts.getFullName();
+        writeCategory(repository, AlertStore.Category.DEPENDABOT, alerts.getDependabotAlerts(), alerts.getDependabotError());
+        writeCategory(repository, AlertStore.Category.SECRET_SCANNING, alerts.getSecretScanningAlerts(), alerts.getSecretScanningError());
+        writeCategory(repository, AlertStore.Category.CODE_SCANNING, alerts.getCodeScanningAlerts(), alerts.getCodeScanningError());
+    }
+
+    /**
+     * Write alerts as they are produced, e.g. from GHASAlertStreams, without
+     * collecting them first. JSON wraps them in one array.
+     */
+    public void writeAlerts(String repository, AlertStore.Category category, Stream<?> alerts) throws IOException {
+        Iterator<?> iterator = alerts.iterator();
+        if (format == Format.JSON) {
+            generator.writeStartArray();
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+            }
+            generator.writeEndArray();
+            endRecord();
+            return;
+        }
+        while (iterator.hasNext()) {
+            writeAlertLine(repository, category, iterator.next());
+        }
+    }
+
+    private void writeCategory(String repository, AlertStore.Category category, List<?> alerts, String error)
+            throws IOException {
+        if (error != null) {
+            generator.writeStartObject();
+            generator.writeStringField("repository", repository);
+            generator.writeStringField("category", category.name().toLowerCase());
+            generator.writeStringField("error", error);
+            generator.writeEndObject();
+            endRecord();
+            return;
+        }
+        for (Object alert : alerts) {
+            writeAlertLine(repository, category, alert);
+        }
+    }
+
+    private void writeAlertLine(String repository, AlertStore.Category category, Object alert) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("repository", repository);
+        generator.writeStringField("category", category.name().toLowerCase());
+        generator.writeFieldName("alert");
+        generator.writeObject(alert);
+        generator.writeEndObject();
+        endRecord();
+    }
+
+    private void endRecord() throws IOException {
+        // Inside the file array the pretty printer separates the elements
+        if (!inArray) {
+            generator.writeRaw('\n');
+        }
+        records++;
+        if (flushEachValue) {
+            generator.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inArray) {
+            inArray = false;
+            generator.writeEndArray();
+            generator.writeRaw('\n');
+        }
+        generator.close();
+    }
+}
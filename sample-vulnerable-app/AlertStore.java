@@ -0,0 +1,694 @@
+import com.github.security.ghas.model.*;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded, file-backed store of alerts for offline analysis.
+ *
+ * Alerts are appended to a single log file; a newer record for the same
+ * repository, category and alert number supersedes the older one. Records
+ * are read back through a memory-mapped view of the log, so a query touches
+ * only the pages of the records it returns.
+ *
+ * On open the log is scanned once to rebuild the in-memory indexes:
+ *   - primary:   category + repository + alert number -> log offset
+ *   - secondary: repository, severity, package name, CVE/GHSA ID and state
+ * A query intersects the secondary indexes it names, smallest first, and
+ * then reads only the matching records.
+ *
+ * Record layout: [int length][int crc32][byte category][short repo length]
+ * [repo UTF-8][alert JSON UTF-8]. A torn write (crash during append) can
+ * only affect the last record; one that is incomplete, fails the CRC
+ * check or has an unknown category or repository length at the end of the
+ * log is truncated on the next open. A damaged
+ * record with valid records after it is not a torn write, and opening the
+ * store fails rather than throw those records away.
+ *
+ * Several processes may use the same log (a sweep and AnalyzeGHASProject,
+ * say). Appends and compaction hold an exclusive FileLock, and they and
+ * the queries first read the records other processes appended since, or
+ * reopen the log if another process compacted it; count() and size()
+ * answer from the indexes as they are. The log is limited to
+ * 2 GB, the reach of a single mapping.
+ *
+ * Superseded records stay in the log until compact() rewrites it.
+ */
+public class AlertStore implements Closeable {
+
+    public enum Category {
+        DEPENDABOT(DependabotAlert.class),
+        SECRET_SCANNING(SecretScanningAlert.class),
+        CODE_SCANNING(CodeScanningAlert.class);
+
+        final Class<?> type;
+
+        Category(Class<?> type) {
+            this.type = type;
+        }
+
+        static Category of(Class<?> type) {
+            for (Category category : values()) {
+                if (category.type == type) {
+                    return category;
+                }
+            }
+            throw new IllegalArgumentException("Not an alert type: " + type.getName());
+        }
+    }
+
+    private static final Category[] CATEGORIES = Category.values();
+
+    /** Length and CRC prefix of every record */
+    private static final int HEADER_BYTES = 8;
+
+    /**
+     * Monitor per log file. A FileLock is held by the whole JVM, and a second
+     * lock on the same file from another store instance would fail.
+     */
+    private static final ConcurrentHashMap<String, Object> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final Object processLock;
+    private FileChannel channel;
+    /** Identity of the opened file, to notice compaction by another process */
+    private Object fileKey;
+    private final ObjectMapper mapper;
+    private MappedByteBuffer mapped;
+    private long size;
+
+    /** Live records by primary key, in insertion order */
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private final Map<String, Set<String>> byRepository = new HashMap<>();
+    private final Map<String, Set<String>> bySeverity = new HashMap<>();
+    private final Map<String, Set<String>> byPackage = new HashMap<>();
+    private final Map<String, Set<String>> byAdvisory = new HashMap<>();
+    private final Map<String, Set<String>> byState = new HashMap<>();
+
+    public AlertStore(File file) throws IOException {
+        this.file = file;
+        this.mapper = new ObjectMapper();
+        this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        AdvisoryInterner.getDefault().register(this.mapper);
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(parent.toPath());
+        this.processLock = PROCESS_LOCKS.computeIfAbsent(file.getCanonicalPath(), path -> new Object());
+        this.channel = open();
+        locked(() -> null);
+    }
+
+    /**
+     * Store in ~/.ghas/store/alerts.log
+     */
+    public static AlertStore openDefault() throws IOException {
+        return new AlertStore(new File(System.getProperty("user.home"),
+            ".ghas" + File.separator + "store" + File.separator + "alerts.log"));
+    }
+
+    /**
+     * Query filter. Unset criteria match everything; values are compared
+     * case-insensitively.
+     */
+    public static class Query {
+        String repository;
+        String severity;
+        String packageName;
+        String advisoryId;
+        String state;
+
+        /** Full repository name, owner/repo */
+        public Query repository(String repository) {
+            this.repository = repository;
+            return this;
+        }
+
+        /** Advisory severity for Dependabot, security severity (or rule severity) for code scanning */
+        public Query severity(String severity) {
+            this.severity = severity;
+            return this;
+        }
+
+        /** Dependency package name, Dependabot only */
+        public Query packageName(String packageName) {
+            this.packageName = packageName;
+            return this;
+        }
+
+        /** CVE or GHSA ID, Dependabot only */
+        public Query advisoryId(String advisoryId) {
+            this.advisoryId = advisoryId;
+            return this;
+        }
+
+        public Query state(String state) {
+            this.state = state;
+            return this;
+        }
+    }
+
+    /**
+     * Store the alerts of a repository. Alerts identical to the stored
+     * version are skipped, so re-storing an unchanged sweep does not grow the log.
+     *
+     * Categories read as API JSON are stored as that JSON. A category that
+     * only came as models from GHASClient is stored as the serialized
+     * models, which lack the fields the models drop.
+     */
+    public synchronized void put(RepositoryAlerts alerts) throws IOException {
+        String repository = alerts.getFullName();
+        locked(() -> {
+            appendAll(Category.DEPENDABOT, repository, alerts.getAlertJson(Category.DEPENDABOT),
+                alerts.getDependabotAlerts());
+            appendAll(Category.SECRET_SCANNING, repository, alerts.getAlertJson(Category.SECRET_SCANNING),
+                alerts.getSecretScanningAlerts());
+            appendAll(Category.CODE_SCANNING, repository, alerts.getAlertJson(Category.CODE_SCANNING),
+                alerts.getCodeScanningAlerts());
+            return null;
+        });
+    }
+
+    /**
+     * Store one alert given as GitHub API JSON
+     */
+    public synchronized void put(Category category, String repository, JsonNode alert) throws IOException {
+        locked(() -> {
+            append(category, repository, alert);
+            return null;
+        });
+    }
+
+    /**
+     * Alerts of the given type matching the query
+     */
+    public synchronized <T> List<T> find(Class<T> type, Query query) throws IOException {
+        locked(() -> null);
+        List<T> results = new ArrayList<>();
+        for (Entry entry : match(Category.of(type), query)) {
+            results.add(mapper.treeToValue(read(entry), type));
+        }
+        return results;
+    }
+
+    /**
+     * Raw API JSON of the alerts matching the query
+     */
+    public synchronized List<JsonNode> findJson(Category category, Query query) throws IOException {
+        locked(() -> null);
+        List<JsonNode> results = new ArrayList<>();
+        for (Entry entry : match(category, query)) {
+            results.add(read(entry));
+        }
+        return results;
+    }
+
+    /**
+     * Hand each matching alert to the visitor without collecting them, so
+     * callers can build their own compact representation of large result sets
+     */
+    public synchronized void scan(Category category, Query query, Visitor visitor) throws IOException {
+        locked(() -> null);
+        for (Entry entry : match(category, query)) {
+            visitor.visit(entry.repository, read(entry));
+        }
+    }
+
+    public interface Visitor {
+        void visit(String repository, JsonNode alert) throws IOException;
+    }
+
+    /**
+     * Number of matching alerts, answered from the indexes alone
+     */
+    public synchronized int count(Category category, Query query) {
+        return match(category, query).size();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Bytes in the log, including superseded records */
+    public synchronized long getLogBytes() {
+        return size;
+    }
+
+    /**
+     * Rewrite the log with live records only
+     */
+    public synchronized void compact() throws IOException {
+        locked(() -> {
+            File compacted = new File(file.getPath() + ".compact");
+            long written = 0;
+            try (FileChannel out = FileChannel.open(compacted.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (Entry entry : entries.values()) {
+                    ByteBuffer record = record(entry.offset);
+                    long newOffset = written;
+                    while (record.hasRemaining()) {
+                        written += out.write(record);
+                    }
+                    entry.offset = newOffset;
+                }
+                out.force(true);
+            }
+
+            // Other processes notice the new file under the lock and reload it
+            Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            mapped = null;
+            channel.close();
+            channel = open();
+            size = written;
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mapped = null;
+        if (channel.isOpen()) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+
+    /**
+     * Append the API JSON of a category if there is any, the models
+     * otherwise. Called with the log locked.
+     */
+    private void appendAll(Category category, String repository, List<JsonNode> json, List<?> models)
+            throws IOException {
+        if (json != null) {
+            for (JsonNode alert : json) {
+                append(category, repository, alert);
+            }
+        } else {
+            for (Object alert : models) {
+                append(category, repository, mapper.valueToTree(alert));
+            }
+        }
+    }
+
+    /**
+     * Append one record, unless the stored version of the alert is byte for
+     * byte the same. Called with the log locked.
+     */
+    private void append(Category category, String repository, JsonNode alert) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(alert);
+        byte[] repo = repository.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer payload = ByteBuffer.allocate(1 + 2 + repo.length + json.length);
+        payload.put((byte) category.ordinal()).putShort((short) repo.length).put(repo).put(json);
+        payload.flip();
+        int crc = crc(payload);
+
+        Entry entry = Entry.of(category, repository, alert);
+        Entry existing = entries.get(entry.key);
+        if (existing != null && existing.crc == crc) {
+            ByteBuffer stored = record(existing.offset);
+            stored.position(HEADER_BYTES);
+            if (stored.equals(payload)) {
+                return;
+            }
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.remaining());
+        record.putInt(payload.remaining()).putInt(crc).put(payload);
+        record.flip();
+        long offset = size;
+        if (offset + record.limit() > Integer.MAX_VALUE) {
+            throw new IOException("Alert log would grow beyond 2 GB, compact it first: " + file);
+        }
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        size += record.limit();
+
+        entry.offset = offset;
+        entry.crc = crc;
+        index(entry);
+    }
+
+    private interface LockedAction<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Run an action holding the exclusive lock on the log, after reading the
+     * records other processes appended since the last call. If another
+     * process compacted the log, the new file is opened and read from the
+     * start.
+     */
+    private <T> T locked(LockedAction<T> action) throws IOException {
+        synchronized (processLock) {
+            while (true) {
+                FileLock lock = channel.lock();
+                try {
+                    if (!isCurrentFile()) {
+                        reopen();
+                        continue;
+                    }
+                    long fileSize = channel.size();
+                    if (fileSize < size) {
+                        // Only compaction shrinks the log; start over to be safe
+                        clear();
+                    }
+                    if (fileSize > size) {
+                        load(fileSize);
+                    }
+                    return action.run();
+                } finally {
+                    // Closing the channel in reopen() has released the lock already
+                    if (lock.isValid()) {
+                        lock.release();
+                    }
+                }
+            }
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        FileChannel opened = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+        return opened;
+    }
+
+    private boolean isCurrentFile() throws IOException {
+        if (fileKey == null) {
+            // The platform has no file identity; compaction by others goes unnoticed
+            return true;
+        }
+        try {
+            return fileKey.equals(Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void reopen() throws IOException {
+        mapped = null;
+        channel.close();
+        channel = open();
+        clear();
+    }
+
+    private void clear() {
+        mapped = null;
+        size = 0;
+        entries.clear();
+        byRepository.clear();
+        bySeverity.clear();
+        byPackage.clear();
+        byAdvisory.clear();
+        byState.clear();
+    }
+
+    private List<Entry> match(Category category, Query query) {
+        List<Set<String>> criteria = new ArrayList<>();
+        addCriterion(criteria, byRepository, query.repository);
+        addCriterion(criteria, bySeverity, query.severity);
+        addCriterion(criteria, byPackage, query.packageName);
+        addCriterion(criteria, byAdvisory, query.advisoryId);
+        addCriterion(criteria, byState, query.state);
+
+        Collection<String> candidates;
+        if (criteria.isEmpty()) {
+            candidates = entries.keySet();
+        } else {
+            criteria.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            candidates = criteria.get(0);
+        }
+
+        List<Entry> matches = new ArrayList<>();
+        for (String key : candidates) {
+            Entry entry = entries.get(key);
+            if (entry.category != category) {
+                continue;
+            }
+            boolean all = true;
+            for (int i = 1; i < criteria.size() && all; i++) {
+                all = criteria.get(i).contains(key);
+            }
+            if (all) {
+                matches.add(entry);
+            }
+        }
+        return matches;
+    }
+
+    private static void addCriterion(List<Set<String>> criteria, Map<String, Set<String>> index, String value) {
+        if (value != null) {
+            Set<String> keys = index.get(value.toLowerCase(Locale.ROOT));
+            criteria.add(keys != null ? keys : Collections.<String>emptySet());
+        }
+    }
+
+    private JsonNode read(Entry entry) throws IOException {
+        ByteBuffer record = record(entry.offset);
+        record.position(HEADER_BYTES + 1);
+        int repoLength = record.getShort();
+        record.position(record.position() + repoLength);
+        byte[] json = new byte[record.remaining()];
+        record.get(json);
+        return mapper.readTree(json);
+    }
+
+    /**
+     * The whole record at an offset, as a slice of the mapped log
+     */
+    private ByteBuffer record(long offset) throws IOException {
+        if (mapped == null || mapped.capacity() < size) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        ByteBuffer view = mapped.duplicate();
+        view.position((int) offset);
+        int length = view.getInt();
+        view.position((int) offset);
+        view.limit((int) offset + HEADER_BYTES + length);
+        return view.slice();
+    }
+
+    /**
+     * Index the records from the end of the known ones up to fileSize
+     */
+    private void load(long fileSize) throws IOException {
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Alert log larger than 2 GB, compact it first: " + file);
+        }
+
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        long offset = size;
+        while (offset < fileSize) {
+            String damage = null;
+            boolean tail = false;
+            ByteBuffer view = mapped.duplicate();
+            view.position((int) offset);
+            int length = offset + HEADER_BYTES <= fileSize ? view.getInt() : -1;
+            int crc = offset + HEADER_BYTES <= fileSize ? view.getInt() : 0;
+            if (offset + HEADER_BYTES > fileSize || (length >= 3 && offset + HEADER_BYTES + length > fileSize)) {
+                damage = "incomplete record";
+                tail = true;
+            } else if (length < 3) {
+                // A crash can leave zero-filled blocks at the end of the file
+                damage = "invalid length " + length;
+                tail = isZero(offset, fileSize);
+            }
+            ByteBuffer payload = null;
+            if (damage == null) {
+                view.limit((int) (offset + HEADER_BYTES + length));
+                payload = view.slice();
+                if (crc(payload.duplicate()) != crc) {
+                    damage = "checksum mismatch";
+                } else if (payload.get(0) < 0 || payload.get(0) >= CATEGORIES.length) {
+                    damage = "unknown category " + payload.get(0);
+                } else if (payload.getShort(1) < 0 || 3 + payload.getShort(1) > length) {
+                    damage = "invalid repository length " + payload.getShort(1);
+                }
+                if (damage != null) {
+                    tail = offset + HEADER_BYTES + length == fileSize;
+                }
+            }
+            if (damage != null) {
+                if (!tail) {
+                    throw new IOException("Damaged record at offset " + offset + " of " + file + " (" + damage +
+                        ") is followed by more data; move the log aside to start a new one");
+                }
+                System.err.println("Truncating " + (fileSize - offset) + " bytes at the end of " + file + " (" + damage + ")");
+                mapped = null;
+                channel.truncate(offset);
+                break;
+            }
+
+            Category category = CATEGORIES[payload.get()];
+            byte[] repo = new byte[payload.getShort()];
+            payload.get(repo);
+            byte[] json = new byte[payload.remaining()];
+            payload.get(json);
+
+            Entry entry = Entry.of(category, new String(repo, StandardCharsets.UTF_8), mapper.readTree(json));
+            entry.offset = offset;
+            entry.crc = crc;
+            index(entry);
+            offset += HEADER_BYTES + length;
+        }
+        size = offset;
+    }
+
+    private boolean isZero(long from, long to) {
+        for (long i = from; i < to; i++) {
+            if (mapped.get((int) i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void index(Entry entry) {
+        Entry previous = entries.remove(entry.key);
+        if (previous != null) {
+            unindex(byRepository, previous.repository, previous.key);
+            unindex(bySeverity, previous.severity, previous.key);
+            unindex(byPackage, previous.packageName, previous.key);
+            unindex(byAdvisory, previous.cveId, previous.key);
+            unindex(byAdvisory, previous.ghsaId, previous.key);
+            unindex(byState, previous.state, previous.key);
+        }
+        entries.put(entry.key, entry);
+        index(byRepository, entry.repository, entry.key);
+        index(bySeverity, entry.severity, entry.key);
+        index(byPackage, entry.packageName, entry.key);
+        index(byAdvisory, entry.cveId, entry.key);
+        index(byAdvisory, entry.ghsaId, entry.key);
+        index(byState, entry.state, entry.key);
+    }
+
+    private static void index(Map<String, Set<String>> index, String value, String key) {
+        if (value != null) {
+            index.computeIfAbsent(value.toLowerCase(Locale.ROOT), v -> new HashSet<>()).add(key);
+        }
+    }
+
+    private static void unindex(Map<String, Set<String>> index, String value, String key) {
+        if (value != null) {
+            Set<String> keys = index.get(value.toLowerCase(Locale.ROOT));
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                index.remove(value.toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    private static int crc(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Index entry of a live record: its location plus the indexed fields
+     */
+    private static class Entry {
+        String key;
+        Category category;
+        String repository;
+        String severity;
+        String packageName;
+        String cveId;
+        String ghsaId;
+        String state;
+        long offset;
+        int crc;
+
+        static Entry of(Category category, String repository, JsonNode alert) {
+            Entry entry = new Entry();
+            entry.category = category;
+            entry.repository = repository;
+            entry.key = category.ordinal() + "|" + repository.toLowerCase(Locale.ROOT) + "|" + alert.path("number").asText();
+            entry.state = text(alert.path("state"));
+
+            if (category == Category.DEPENDABOT) {
+                JsonNode advisory = alert.path("security_advisory");
+                entry.severity = text(advisory.path("severity"));
+                entry.cveId = text(advisory.path("cve_id"));
+                entry.ghsaId = text(advisory.path("ghsa_id"));
+                entry.packageName = text(alert.path("dependency").path("package").path("name"));
+            } else if (category == Category.CODE_SCANNING) {
+                JsonNode rule = alert.path("rule");
+                entry.severity = text(rule.path("security_severity_level"));
+                if (entry.severity == null) {
+                    entry.severity = text(rule.path("severity"));
+                }
+            }
+            return entry;
+        }
+
+        private static String text(JsonNode node) {
+            return node.isValueNode() && !node.isNull() ? node.asText() : null;
+        }
+    }
+
+    /**
+     * Query the default store offline.
+     *
+     * Usage: java AlertStore [dependabot|secret-scanning|code-scanning]
+     *        [--repo owner/repo] [--severity s] [--package p] [--advisory id] [--state s]
+     */
+    public static void main(String[] args) {
+        try (AlertStore store = openDefault()) {
+            Category category = Category.DEPENDABOT;
+            Query query = new Query();
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "dependabot": category = Category.DEPENDABOT; break;
+                    case "secret-scanning": category = Category.SECRET_SCANNING; break;
+                    case "code-scanning": category = Category.CODE_SCANNING; break;
+                    case "--repo": query.repository(args[++i]); break;
+                    case "--severity": query.severity(args[++i]); break;
+                    case "--package": query.packageName(args[++i]); break;
+                    case "--advisory": query.advisoryId(args[++i]); break;
+                    case "--state": query.state(args[++i]); break;
+                    default: throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                }
+            }
+
+            long start = System.nanoTime();
+            List<JsonNode> alerts = store.findJson(category, query);
+            long elapsedMicros = (System.nanoTime() - start) / 1000;
+
+            for (JsonNode alert : alerts) {
+                System.out.println(alert);
+            }
+            System.out.println("\n" + alerts.size() + " of " + store.size() + " stored alerts in " + elapsedMicros + " µs");
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
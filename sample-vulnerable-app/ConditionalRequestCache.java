@@ -0,0 +1,455 @@
+import okhttp3.*;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk-backed HTTP cache for conditional GitHub API requests.
+ *
+ * Successful GET responses that carry an ETag or Last-Modified validator are
+ * stored on disk. The next request for the same URL is sent with
+ * If-None-Match / If-Modified-Since, and a 304 answer is turned back into the
+ * stored 200 response. GitHub does not charge 304 responses against the rate
+ * limit, so unchanged alert pages cost no budget.
+ *
+ * Entries are keyed by credential, URL and Accept header. The same URL
+ * means different data for different installations (/installation/repositories
+ * above all), so a response is only ever replayed to the credential that
+ * received it. Installation tokens and app JWTs are minted afresh every
+ * hour and every run, so their holders register them with the identity
+ * they act for (registerCredential, e.g. "installation:93351110"), and the
+ * key uses that identity instead of the token: a rotated token and the next
+ * run find the entries of the previous one. Other credentials, such as
+ * personal access tokens, are keyed by the token itself.
+ *
+ * Bodies are never buffered in memory. A cacheable response is copied to
+ * a temporary file while the caller reads it, and becomes the cache entry
+ * only once the caller has read it to the end; a response abandoned half
+ * way is discarded. Each entry is a single file, the validators on the
+ * first line and the body after it, replaced by an atomic rename, so a
+ * reader sees either the old or the new entry, never one's validators with
+ * the other's body. A 304 is answered from the file that was opened to read
+ * the validators.
+ *
+ * The cache is bounded by total size and evicts least recently used
+ * entries. Access order survives restarts through the file modification
+ * time of each entry.
+ */
+public class ConditionalRequestCache implements Interceptor {
+
+    public static final long DEFAULT_MAX_BYTES = 100L * 1024 * 1024;
+
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static ConditionalRequestCache defaultCache;
+
+    /** Registered tokens -> the stable identity they act for */
+    private static final Map<String, String> CREDENTIAL_IDENTITIES = new ConcurrentHashMap<>();
+
+    private final File directory;
+    private final long maxBytes;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** Entry key -> file size, in access order (eldest first) */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ConditionalRequestCache(File directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory.toPath());
+        loadEntries();
+    }
+
+    /**
+     * Process-wide cache in ~/.ghas/http-cache
+     */
+    public static synchronized ConditionalRequestCache getDefault() throws IOException {
+        if (defaultCache == null) {
+            File directory = new File(System.getProperty("user.home"), ".ghas" + File.separator + "http-cache");
+            defaultCache = new ConditionalRequestCache(directory, DEFAULT_MAX_BYTES);
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Key the requests made with a token by the identity it acts for, e.g.
+     * "installation:{id}" or "app:{id}", so cache entries survive the
+     * token's rotation. Tokens are held until unregistered.
+     */
+    public static void registerCredential(String token, String identity) {
+        CREDENTIAL_IDENTITIES.put(token, identity);
+    }
+
+    /**
+     * Forget a token that was replaced; requests still using it are keyed
+     * by the token itself from then on
+     */
+    public static void unregisterCredential(String token) {
+        CREDENTIAL_IDENTITIES.remove(token);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+
+        String key = key(request);
+        CachedResponse cached = open(key);
+
+        Request.Builder conditional = request.newBuilder();
+        if (cached != null && cached.etag != null) {
+            conditional.header("If-None-Match", cached.etag);
+        }
+        if (cached != null && cached.lastModified != null) {
+            conditional.header("If-Modified-Since", cached.lastModified);
+        }
+
+        Response response;
+        try {
+            response = chain.proceed(conditional.build());
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(cached);
+            throw e;
+        }
+
+        if (response.code() == 304 && cached != null) {
+            hits.incrementAndGet();
+            touch(key);
+            return fromCache(response, cached);
+        }
+        closeQuietly(cached);
+
+        misses.incrementAndGet();
+        String etag = response.header("ETag");
+        String lastModified = response.header("Last-Modified");
+        if (response.code() != 200 || response.body() == null || (etag == null && lastModified == null)) {
+            return response;
+        }
+
+        MediaType contentType = response.body().contentType();
+        CachedResponse entry = new CachedResponse();
+        entry.url = request.url().toString();
+        entry.etag = etag;
+        entry.lastModified = lastModified;
+        entry.contentType = contentType != null ? contentType.toString() : null;
+        entry.link = response.header("Link");
+        return store(key, entry, response);
+    }
+
+    /** Responses answered from the cache with a 304 */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** Cacheable requests that needed a full response */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * One-line summary for tool output
+     */
+    public String stats() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return "HTTP cache: " + hitCount + " hits / " + total + " requests (" +
+            (total == 0 ? 0 : hitCount * 100 / total) + "% served by 304), " +
+            getEntryCount() + " entries, " + getSizeBytes() / 1024 + " KB";
+    }
+
+    private Response fromCache(Response notModified, CachedResponse cached) {
+        MediaType contentType = cached.contentType != null ? MediaType.parse(cached.contentType) : null;
+
+        // Keep the fresh 304 headers (rate limit etc.) but restore the ones describing the body
+        Response.Builder builder = notModified.newBuilder()
+            .code(200)
+            .message("OK")
+            .body(ResponseBody.create(contentType, cached.bodyLength, cached.body));
+        if (cached.contentType != null) {
+            builder.header("Content-Type", cached.contentType);
+        }
+        if (cached.link != null) {
+            builder.header("Link", cached.link);
+        }
+        notModified.close();
+        return builder.build();
+    }
+
+    /**
+     * Open an entry: its validators are read, and the body is left open at
+     * its first byte for a 304. Null if there is no readable entry.
+     */
+    private CachedResponse open(String key) {
+        synchronized (this) {
+            if (!entries.containsKey(key)) {
+                return null;
+            }
+        }
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(entryFile(key));
+            long size = in.getChannel().size();
+            BufferedSource source = Okio.buffer(Okio.source(in));
+            String header = source.readUtf8LineStrict();
+
+            CachedResponse cached = mapper.readValue(header, CachedResponse.class);
+            cached.body = source;
+            cached.bodyLength = size - header.getBytes(StandardCharsets.UTF_8).length - 1;
+            return cached;
+        } catch (IOException | RuntimeException e) {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                    // Nothing to recover, the entry is dropped below
+                }
+            }
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Hand the response on with a body that copies itself into a temporary
+     * file as it is read, and commit that file as the entry at the end of
+     * the body. The cache is best effort: if the file cannot be written the
+     * caller still gets the full response, it just is not stored.
+     */
+    private Response store(String key, CachedResponse entry, Response response) {
+        File temp;
+        BufferedSink sink;
+        try {
+            temp = Files.createTempFile(directory.toPath(), key, TEMP_SUFFIX).toFile();
+            sink = Okio.buffer(Okio.sink(temp));
+            sink.writeUtf8(mapper.writeValueAsString(entry)).writeByte('\n');
+        } catch (IOException e) {
+            return response;
+        }
+
+        ResponseBody body = response.body();
+        ForwardingSource copying = new ForwardingSource(body.source()) {
+            private boolean finished;
+
+            @Override
+            public long read(Buffer buffer, long byteCount) throws IOException {
+                long read;
+                try {
+                    read = super.read(buffer, byteCount);
+                } catch (IOException e) {
+                    abandon();
+                    throw e;
+                }
+                if (read == -1) {
+                    commit();
+                } else if (!finished) {
+                    try {
+                        buffer.copyTo(sink.buffer(), buffer.size() - read, read);
+                        sink.emitCompleteSegments();
+                    } catch (IOException e) {
+                        abandon();
+                    }
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                // Closed before the end of the body: a partial body is no entry
+                abandon();
+                super.close();
+            }
+
+            private void commit() {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                try {
+                    sink.close();
+                    moveAtomically(temp, entryFile(key));
+                } catch (IOException e) {
+                    temp.delete();
+                    remove(key);
+                    return;
+                }
+                synchronized (ConditionalRequestCache.this) {
+                    long size = entryFile(key).length();
+                    Long previous = entries.put(key, size);
+                    totalBytes += size - (previous != null ? previous : 0);
+                    evict();
+                }
+            }
+
+            private void abandon() {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                try {
+                    sink.close();
+                } catch (IOException ignored) {
+                    // The file is deleted either way
+                }
+                temp.delete();
+            }
+        };
+
+        return response.newBuilder()
+            .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(copying)))
+            .build();
+    }
+
+    private static void moveAtomically(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void closeQuietly(CachedResponse cached) {
+        if (cached != null) {
+            try {
+                cached.body.close();
+            } catch (IOException ignored) {
+                // Read-only file handle, nothing to flush
+            }
+        }
+    }
+
+    private void touch(String key) {
+        synchronized (this) {
+            entries.get(key);
+        }
+        entryFile(key).setLastModified(System.currentTimeMillis());
+    }
+
+    private synchronized void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        entryFile(key).delete();
+    }
+
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            totalBytes -= entry.getValue();
+            eldest.remove();
+            entryFile(entry.getKey()).delete();
+        }
+    }
+
+    private synchronized void loadEntries() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<File> ordered = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(ENTRY_SUFFIX)) {
+                ordered.add(file);
+            } else {
+                // Temporary files of an interrupted run, and entries of the old two-file layout
+                file.delete();
+            }
+        }
+
+        // Oldest access first, so the LinkedHashMap ends up in LRU order
+        ordered.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : ordered) {
+            String key = file.getName().substring(0, file.getName().length() - ENTRY_SUFFIX.length());
+            entries.put(key, file.length());
+            totalBytes += file.length();
+        }
+        evict();
+    }
+
+    private File entryFile(String key) {
+        return new File(directory, key + ENTRY_SUFFIX);
+    }
+
+    private static String key(Request request) {
+        String accept = request.header("Accept");
+        String identity = credential(request.header("Authorization")) + "\n" + request.url() + "\n" +
+            (accept != null ? accept : "");
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(identity.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The registered identity behind an Authorization header ("Bearer" or
+     * "token" scheme), or the header itself for unregistered credentials
+     */
+    private static String credential(String authorization) {
+        if (authorization == null) {
+            return "";
+        }
+        String token = authorization.substring(authorization.indexOf(' ') + 1).trim();
+        String identity = CREDENTIAL_IDENTITIES.get(token);
+        return identity != null ? "identity " + identity : authorization;
+    }
+
+    /**
+     * Stored validators and the headers needed to rebuild the response
+     */
+    static class CachedResponse {
+        public String url;
+        public String etag;
+        public String lastModified;
+        public String contentType;
+        public String link;
+
+        /** Not persisted: the open entry file, positioned at the first byte of the body */
+        BufferedSource body;
+        long bodyLength;
+    }
+}
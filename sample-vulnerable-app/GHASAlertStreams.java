@@ -0,0 +1,500 @@
+import com.github.security.ghas.model.*;
+import okhttp3.*;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy, paginated variants of the GHASClient alert getters.
+ *
+ * GHASClient.getDependabotAlerts() and friends download every page before
+ * returning a List. The streams returned here fetch a page only when the
+ * consumer reaches it, and request the following page in the background
+ * while the current one is being processed. A consumer that stops early
+ * (limit, findFirst, anyMatch, ...) downloads at most one page beyond the
+ * one it stopped in; closing the stream cancels that prefetch.
+ *
+ * Pages are followed through the Link header, so both page-number and
+ * cursor based endpoints work. Page bodies are decoded token by token with
+ * AlertPageDecoder, so only the alert being consumed is materialised.
+ *
+ * The organization streams read GitHub's org-wide alert endpoints: every
+ * alert of every repository of the organization in one paginated stream,
+ * each alert paired with the repository it belongs to. An org sweep then
+ * costs three dense streams instead of three mostly empty lists per
+ * repository. They need a token that sees all repositories of the
+ * organization, such as an org installation with repository_selection
+ * "all".
+ */
+public class GHASAlertStreams {
+
+    private static final String GITHUB_API_BASE = "https://api.github.com";
+    private static final int PAGE_SIZE = 100;
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]+)>;\\s*rel=\"next\"");
+
+    private final String token;
+    private final String apiBase;
+    private final RateLimitScheduler.Priority priority;
+    private final OkHttpClient httpClient;
+    private final ObjectMapper mapper;
+
+    public GHASAlertStreams(String token) throws IOException {
+        this(token, GITHUB_API_BASE);
+    }
+
+    public GHASAlertStreams(String token, RateLimitScheduler.Priority priority) throws IOException {
+        this(token, GITHUB_API_BASE, priority);
+    }
+
+    public GHASAlertStreams(String token, String apiBase) throws IOException {
+        this(token, apiBase, RateLimitScheduler.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Streams whose page requests are scheduled with the given rate limit
+     * priority; org-wide sweeps should pass BACKGROUND
+     */
+    public GHASAlertStreams(String token, String apiBase, RateLimitScheduler.Priority priority) throws IOException {
+        this.token = token;
+        this.apiBase = apiBase;
+        this.priority = priority;
+        this.httpClient = GitHubHttpTransport.shared();
+        this.mapper = new ObjectMapper();
+        this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        AdvisoryInterner.getDefault().register(this.mapper);
+    }
+
+    /**
+     * Stream Dependabot alerts of a repository, fetching pages on demand
+     */
+    public Stream<DependabotAlert> streamDependabotAlerts(String owner, String repo) {
+        return stream("/repos/" + owner + "/" + repo + "/dependabot/alerts", DependabotAlert.class);
+    }
+
+    /**
+     * Stream the Dependabot alerts of a repository as API JSON, which keeps
+     * the fields the model drops (CVSS score, created_at, dependency scope);
+     * bind() turns an element into the model
+     */
+    public Stream<JsonNode> streamDependabotAlertsJson(String owner, String repo) {
+        return stream("/repos/" + owner + "/" + repo + "/dependabot/alerts", JsonNode.class);
+    }
+
+    /**
+     * Stream secret scanning alerts of a repository, fetching pages on demand
+     */
+    public Stream<SecretScanningAlert> streamSecretScanningAlerts(String owner, String repo) {
+        return stream("/repos/" + owner + "/" + repo + "/secret-scanning/alerts", SecretScanningAlert.class);
+    }
+
+    /**
+     * Stream code scanning alerts of a repository, fetching pages on demand
+     */
+    public Stream<CodeScanningAlert> streamCodeScanningAlerts(String owner, String repo) {
+        return stream("/repos/" + owner + "/" + repo + "/code-scanning/alerts", CodeScanningAlert.class);
+    }
+
+    /**
+     * Stream the Dependabot alerts of every repository of an organization
+     */
+    public Stream<OrgAlert<DependabotAlert>> streamOrgDependabotAlerts(String org) {
+        return streamOrg("/orgs/" + org + "/dependabot/alerts", DependabotAlert.class);
+    }
+
+    /**
+     * Stream the Dependabot alerts of every repository of an organization as
+     * API JSON; bind() turns an element into the model
+     */
+    public Stream<OrgAlert<JsonNode>> streamOrgDependabotAlertsJson(String org) {
+        return streamOrg("/orgs/" + org + "/dependabot/alerts", JsonNode.class);
+    }
+
+    /**
+     * Stream the secret scanning alerts of every repository of an organization
+     */
+    public Stream<OrgAlert<SecretScanningAlert>> streamOrgSecretScanningAlerts(String org) {
+        return streamOrg("/orgs/" + org + "/secret-scanning/alerts", SecretScanningAlert.class);
+    }
+
+    /**
+     * Stream the code scanning alerts of every repository of an organization
+     */
+    public Stream<OrgAlert<CodeScanningAlert>> streamOrgCodeScanningAlerts(String org) {
+        return streamOrg("/orgs/" + org + "/code-scanning/alerts", CodeScanningAlert.class);
+    }
+
+    /**
+     * Stream the secret scanning alerts of every repository of an
+     * organization as API JSON
+     */
+    public Stream<OrgAlert<JsonNode>> streamOrgSecretScanningAlertsJson(String org) {
+        return streamOrg("/orgs/" + org + "/secret-scanning/alerts", JsonNode.class);
+    }
+
+    /**
+     * Stream the code scanning alerts of every repository of an
+     * organization as API JSON
+     */
+    public Stream<OrgAlert<JsonNode>> streamOrgCodeScanningAlertsJson(String org) {
+        return streamOrg("/orgs/" + org + "/code-scanning/alerts", JsonNode.class);
+    }
+
+    /**
+     * Stream an org-wide alert endpoint. The alert models drop the embedded
+     * repository, so OrgAlertDeserializer takes its full name out of the
+     * token stream while the rest binds straight to the alert type.
+     */
+    public <T> Stream<OrgAlert<T>> streamOrg(String path, Class<T> type) {
+        JavaType orgAlert = mapper.getTypeFactory().constructParametricType(OrgAlert.class, type);
+        return stream(path, new AlertPageDecoder<OrgAlert<T>>(mapper, orgAlert));
+    }
+
+    /**
+     * Bind an alert read as JSON to its model, with the settings of the
+     * typed streams
+     */
+    public <T> T bind(JsonNode alert, Class<T> type) {
+        try {
+            return mapper.treeToValue(alert, type);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * An alert from an organization stream, with the repository it belongs to
+     */
+    @JsonDeserialize(using = OrgAlertDeserializer.class)
+    public static class OrgAlert<T> {
+        private final String repository;
+        private final T alert;
+
+        OrgAlert(String repository, T alert) {
+            this.repository = repository;
+            this.alert = alert;
+        }
+
+        /**
+         * Full name of the repository, owner/name
+         */
+        public String getRepository() {
+            return repository;
+        }
+
+        public T getAlert() {
+            return alert;
+        }
+    }
+
+    /**
+     * Binds an OrgAlert in one pass. The alert object goes to the
+     * deserializer of the alert type through a RepositoryParser, which reads
+     * the embedded repository out of the token stream on the way, so there
+     * is neither an intermediate tree nor a second binding.
+     */
+    static class OrgAlertDeserializer extends StdDeserializer<OrgAlert<?>> implements ContextualDeserializer {
+        private static final long serialVersionUID = 1L;
+
+        private final JsonDeserializer<Object> alertDeserializer;
+
+        OrgAlertDeserializer() {
+            this(null);
+        }
+
+        private OrgAlertDeserializer(JsonDeserializer<Object> alertDeserializer) {
+            super(OrgAlert.class);
+            this.alertDeserializer = alertDeserializer;
+        }
+
+        @Override
+        public JsonDeserializer<?> createContextual(DeserializationContext ctxt, BeanProperty property)
+                throws JsonMappingException {
+            JavaType type = property != null ? property.getType() : ctxt.getContextualType();
+            return new OrgAlertDeserializer(ctxt.findRootValueDeserializer(type.containedTypeOrUnknown(0)));
+        }
+
+        @Override
+        public OrgAlert<?> deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            RepositoryParser alert = new RepositoryParser(parser);
+            Object value = alertDeserializer.deserialize(alert, ctxt);
+            return new OrgAlert<>(alert.repository, value);
+        }
+    }
+
+    /**
+     * Parser over one alert object that hides its "repository" field from
+     * the deserializer reading through it, keeping repository.full_name.
+     * Every next* method of JsonParser goes through nextToken() or
+     * nextValue(), so overriding those two covers them all.
+     */
+    private static class RepositoryParser extends JsonParserDelegate {
+        private final JsonStreamContext alertContext;
+        String repository = "";
+
+        RepositoryParser(JsonParser parser) {
+            super(parser);
+            // Positioned at the START_OBJECT of the alert, whose fields live in this context
+            this.alertContext = parser.getParsingContext();
+        }
+
+        @Override
+        public JsonToken nextToken() throws IOException {
+            JsonToken token = delegate.nextToken();
+            if (token == JsonToken.FIELD_NAME && delegate.getParsingContext() == alertContext &&
+                    "repository".equals(delegate.getCurrentName())) {
+                readRepository();
+                token = delegate.nextToken();
+            }
+            return token;
+        }
+
+        @Override
+        public JsonToken nextValue() throws IOException {
+            JsonToken token = nextToken();
+            return token == JsonToken.FIELD_NAME ? nextToken() : token;
+        }
+
+        private void readRepository() throws IOException {
+            if (delegate.nextToken() != JsonToken.START_OBJECT) {
+                delegate.skipChildren();
+                return;
+            }
+            while (delegate.nextToken() == JsonToken.FIELD_NAME) {
+                String field = delegate.getCurrentName();
+                if (delegate.nextToken() == JsonToken.VALUE_STRING && "full_name".equals(field)) {
+                    repository = delegate.getText();
+                } else {
+                    delegate.skipChildren();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stream any paginated list endpoint. The path may already carry query
+     * parameters; per_page is added here.
+     */
+    public <T> Stream<T> stream(String path, Class<T> type) {
+        return stream(path, new AlertPageDecoder<>(mapper, type));
+    }
+
+    private <T> Stream<T> stream(String path, AlertPageDecoder<T> decoder) {
+        String separator = path.contains("?") ? "&" : "?";
+        PageIterator<T> pages = new PageIterator<>(apiBase + path + separator + "per_page=" + PAGE_SIZE, decoder);
+
+        return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(pages::close);
+    }
+
+    /**
+     * A page being consumed. Its body is decoded one alert at a time as the
+     * consumer advances.
+     */
+    private static class Page<T> {
+        final Response response;
+        final AlertPageDecoder.Alerts<T> items;
+        final String nextUrl;
+
+        Page(Response response, AlertPageDecoder.Alerts<T> items, String nextUrl) {
+            this.response = response;
+            this.items = items;
+            this.nextUrl = nextUrl;
+        }
+
+        void close() {
+            try {
+                items.close();
+            } catch (IOException ignored) {
+                // Closing a half-read body can fail; the response is closed below regardless
+            }
+            response.close();
+        }
+    }
+
+    /**
+     * Iterates over the items of all pages. The next page request is
+     * started as soon as the headers (and so the Link header) of the current
+     * page have arrived. The OkHttp callback only hands over the response;
+     * reading and decoding the body happens on the consuming thread, so a
+     * slow body never holds a dispatcher thread.
+     */
+    private class PageIterator<T> implements Iterator<T> {
+        private final AlertPageDecoder<T> decoder;
+        private Page<T> current;
+        private CompletableFuture<Response> next;
+        private volatile Call nextCall;
+        private volatile boolean closed;
+
+        PageIterator(String firstUrl, AlertPageDecoder<T> decoder) {
+            this.decoder = decoder;
+            this.next = fetch(firstUrl);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.items.hasNext()) {
+                if (current != null) {
+                    current.close();
+                    current = null;
+                }
+                if (next == null) {
+                    return false;
+                }
+                Response response = await(next);
+                next = null;
+                String nextUrl = nextLink(response.header("Link"));
+                current = open(response, nextUrl);
+                if (nextUrl != null) {
+                    next = fetch(nextUrl);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.items.next();
+        }
+
+        void close() {
+            closed = true;
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            if (next != null) {
+                Call call = nextCall;
+                if (call != null) {
+                    call.cancel();
+                }
+                next.thenAccept(Response::close);
+                next = null;
+            }
+        }
+
+        /**
+         * Send a page request. The rate limit wait happens here, on the
+         * consuming thread; the call is then enqueued once the concurrency
+         * limiter admits it, so no dispatcher thread waits for either.
+         */
+        private CompletableFuture<Response> fetch(String url) {
+            Request request = new Request.Builder()
+                .url(url)
+                .addHeader("Authorization", "Bearer " + token)
+                .addHeader("Accept", "application/vnd.github.v3+json")
+                .addHeader("User-Agent", "GHAS-Client/1.0")
+                .tag(RateLimitScheduler.Priority.class, priority)
+                .build();
+            try {
+                request = RateLimitScheduler.getDefault().pace(request);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for rate limit budget");
+            }
+
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.getDefault();
+            limiter.admit(request).whenComplete((admitted, error) -> {
+                if (error != null) {
+                    future.completeExceptionally(error);
+                    return;
+                }
+                Call call = httpClient.newCall(admitted);
+                nextCall = call;
+                if (closed) {
+                    // Enqueued anyway: the cancelled call fails at once and gives its slot back
+                    call.cancel();
+                }
+                call.enqueue(callback(url, future, limiter));
+            });
+            return future;
+        }
+
+        private Callback callback(String url, CompletableFuture<Response> future, AdaptiveConcurrencyLimiter limiter) {
+            return new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    limiter.abandon(call.request());
+                    future.completeExceptionally(e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    if (!response.isSuccessful()) {
+                        response.close();
+                        future.completeExceptionally(
+                            new IOException("GitHub API request failed: " + response.code() + " " + url));
+                        return;
+                    }
+                    future.complete(response);
+                }
+            };
+        }
+
+        /**
+         * Start decoding a page on the consuming thread
+         */
+        private Page<T> open(Response response, String nextUrl) {
+            try {
+                return new Page<>(response, decoder.decode(response.body().byteStream()), nextUrl);
+            } catch (IOException | RuntimeException e) {
+                response.close();
+                throw e instanceof IOException ? new UncheckedIOException((IOException) e) : (RuntimeException) e;
+            }
+        }
+
+        private Response await(CompletableFuture<Response> page) {
+            try {
+                return page.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for the next page");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw new UncheckedIOException((IOException) cause);
+                }
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+            }
+        }
+    }
+
+    private static String nextLink(String linkHeader) {
+        if (linkHeader == null) {
+            return null;
+        }
+        Matcher matcher = NEXT_LINK.matcher(linkHeader);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+}
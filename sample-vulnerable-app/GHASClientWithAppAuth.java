@@ -1,9 +1,25 @@
 import com.github.security.ghas.GHASClient;
 import com.github.security.ghas.model.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Enhanced GHAS Client with GitHub App Authentication
@@ -13,15 +29,49 @@ import java.util.List;
  */
 public class GHASClientWithAppAuth {
     
+    /** Default number of repositories scanned in parallel by {@link #scanAll()} */
+    public static final int DEFAULT_SCAN_CONCURRENCY = 8;
+    
+    /** Number of alerts in the org-wide ranking printed by {@link #scanAll()} */
+    public static final int TOP_VULNERABILITIES = 10;
+    
+    private static final String GITHUB_API_BASE = "https://api.github.com";
+    
+    private static final GHASMetrics METRICS = GHASMetrics.getDefault();
+    
+    /**
+     * Page size used to count GHASClient's pages. GHASClient does not say
+     * which it uses; GitHub's default errs towards reserving too much.
+     */
+    private static final int CLIENT_PAGE_SIZE = 30;
+    
+    private final String apiBase;
     private final GitHubAppJWTAuth appAuth;
-    private final ObjectMapper mapper;
+    private final InstallationTokenCache tokenCache;
+    private final InstallationIndex installationIndex;
+    private final ConcurrentHashMap<Long, InstallationClient> clients = new ConcurrentHashMap<>();
+    /** GHASClient pages spent by the repositories swept so far, for the budget reservation */
+    private final AtomicLong sweptPages = new AtomicLong();
+    private final AtomicLong sweptRepositories = new AtomicLong();
     private String currentAccessToken;
     private long currentInstallationId;
+    private boolean deltaSync;
+    private File alertStoreFile;
+    private File reportFile;
     
     public GHASClientWithAppAuth(String appId, String privateKeyPath) throws Exception {
-        this.appAuth = new GitHubAppJWTAuth(appId, privateKeyPath);
-        this.mapper = new ObjectMapper();
-        this.mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        this(appId, privateKeyPath, GITHUB_API_BASE);
+    }
+    
+    /**
+     * Client for another API root, e.g. GitHub Enterprise Server or a local
+     * MockGitHubServer
+     */
+    public GHASClientWithAppAuth(String appId, String privateKeyPath, String apiBase) throws Exception {
+        this.apiBase = apiBase;
+        this.appAuth = new GitHubAppJWTAuth(appId, privateKeyPath, apiBase);
+        this.tokenCache = appAuth.getTokenCache();
+        this.installationIndex = new InstallationIndex(appAuth, tokenCache);
     }
     
     /**
@@ -30,22 +80,36 @@ public class GHASClientWithAppAuth {
     public void authenticateForRepository(String owner, String repo) throws Exception {
         System.out.println("Authenticating for repository: " + owner + "/" + repo);
         
-        // Get installations and find the one that covers this repository
-        JsonNode installations = appAuth.getInstallations();
+        // Find the installation that covers this repository
+        long installationId = installationIndex.findInstallation(owner, repo);
         
-        for (JsonNode installation : installations) {
-            long installationId = installation.get("id").asLong();
-            String account = installation.get("account").get("login").asText();
-            
-            if (account.equals(owner)) {
-                this.currentInstallationId = installationId;
-                this.currentAccessToken = appAuth.getInstallationAccessToken(installationId);
-                System.out.println("✓ Authenticated for installation ID: " + installationId);
-                return;
-            }
-        }
-        
-        throw new Exception("No GitHub App installation found for: " + owner + "/" + repo);
+        this.currentInstallationId = installationId;
+        this.currentAccessToken = tokenCache.getToken(installationId);
+        System.out.println("✓ Authenticated for installation ID: " + installationId);
+    }
+    
+    /**
+     * Fetch alerts incrementally through AlertDeltaSync snapshots instead of
+     * downloading every alert on each analysis or sweep
+     */
+    public void setDeltaSync(boolean deltaSync) {
+        this.deltaSync = deltaSync;
+    }
+    
+    /**
+     * Store scanAll() results in this log instead of the default ~/.ghas store
+     */
+    public void setAlertStoreFile(File alertStoreFile) {
+        this.alertStoreFile = alertStoreFile;
+    }
+    
+    /**
+     * Also stream scanAll() results to this report file: one JSON array of
+     * repositories, or one line per alert for *.ndjson; a .gz suffix
+     * compresses the report
+     */
+    public void setReportFile(File reportFile) {
+        this.reportFile = reportFile;
     }
     
     /**
@@ -56,7 +120,29 @@ public class GHASClientWithAppAuth {
             throw new IllegalStateException("Must authenticate for a repository first");
         }
         
-        return new GHASClient(currentAccessToken, null, 30, 3);
+        return clientFor(currentInstallationId, currentAccessToken);
+    }
+    
+    /**
+     * GHASClient for an installation, reused for as long as its token is current.
+     * GHASClient builds its own HTTP client, so handing out a fresh one per call
+     * would throw away its connection pool and pay the TLS handshake again.
+     */
+    private GHASClient clientFor(long installationId, String token) {
+        return clients.compute(installationId, (id, existing) ->
+            existing != null && existing.token.equals(token)
+                ? existing
+                : new InstallationClient(token, new GHASClient(token, apiBase, 30, 3))).client;
+    }
+    
+    private static class InstallationClient {
+        final String token;
+        final GHASClient client;
+        
+        InstallationClient(String token, GHASClient client) {
+            this.token = token;
+            this.client = client;
+        }
     }
     
     /**
@@ -88,34 +174,34 @@ public class GHASClientWithAppAuth {
             System.out.println("  Size: " + repository.getSize() + " KB");
             System.out.println();
             
-            // 5. Security Analysis
+            // 5. Security Analysis - the three categories are fetched concurrently
             System.out.println("3. Security Analysis...");
+            RepositoryAlerts summary = deltaSync
+                ? new AlertDeltaSync(new GHASAlertStreams(currentAccessToken, apiBase),
+                    AlertDeltaSync.defaultDirectory()).sync(owner, repo)
+                : RepositoryAlerts.fetch(client, new GHASAlertStreams(currentAccessToken, apiBase), owner, repo);
             
             // Dependabot Alerts
-            try {
-                List<DependabotAlert> dependabotAlerts = client.getDependabotAlerts(owner, repo);
+            if (summary.getDependabotError() == null) {
+                List<DependabotAlert> dependabotAlerts = summary.getDependabotAlerts();
                 System.out.println("✓ Dependabot Alerts: " + dependabotAlerts.size());
                 
-                // Show severity breakdown
-                long critical = dependabotAlerts.stream()
-                    .filter(alert -> alert.getSecurityAdvisory() != null && 
-                            "critical".equals(alert.getSecurityAdvisory().getSeverity()))
-                    .count();
-                long high = dependabotAlerts.stream()
-                    .filter(alert -> alert.getSecurityAdvisory() != null && 
-                            "high".equals(alert.getSecurityAdvisory().getSeverity()))
-                    .count();
+                // Show severity breakdown, tallied in one pass
+                SecurityAggregator stats = new SecurityAggregator();
+                for (DependabotAlert alert : dependabotAlerts) {
+                    stats.add(alert);
+                }
                 
-                System.out.println("  - Critical: " + critical);
-                System.out.println("  - High: " + high);
+                System.out.println("  - Critical: " + stats.getSeverityCount(SecurityAggregator.Severity.CRITICAL));
+                System.out.println("  - High: " + stats.getSeverityCount(SecurityAggregator.Severity.HIGH));
                 
-            } catch (Exception e) {
-                System.out.println("⚠ Dependabot: " + e.getMessage());
+            } else {
+                System.out.println("⚠ Dependabot: " + summary.getDependabotError());
             }
             
             // Secret Scanning Alerts
-            try {
-                List<SecretScanningAlert> secretAlerts = client.getSecretScanningAlerts(owner, repo);
+            if (summary.getSecretScanningError() == null) {
+                List<SecretScanningAlert> secretAlerts = summary.getSecretScanningAlerts();
                 System.out.println("✓ Secret Scanning Alerts: " + secretAlerts.size());
                 
                 for (SecretScanningAlert alert : secretAlerts) {
@@ -123,30 +209,27 @@ public class GHASClientWithAppAuth {
                         " (State: " + alert.getState() + ")");
                 }
                 
-            } catch (Exception e) {
-                System.out.println("⚠ Secret Scanning: " + e.getMessage());
+            } else {
+                System.out.println("⚠ Secret Scanning: " + summary.getSecretScanningError());
             }
             
             // Code Scanning Alerts
-            try {
-                List<CodeScanningAlert> codeAlerts = client.getCodeScanningAlerts(owner, repo);
-                System.out.println("✓ Code Scanning Alerts: " + codeAlerts.size());
+            if (summary.getCodeScanningError() == null) {
+                System.out.println("✓ Code Scanning Alerts: " + summary.getCodeScanningAlerts().size());
                 
-            } catch (Exception e) {
-                System.out.println("⚠ Code Scanning: " + e.getMessage());
+            } else {
+                System.out.println("⚠ Code Scanning: " + summary.getCodeScanningError());
             }
             
             System.out.println();
             
-            // 6. Generate comprehensive security summary
+            // 6. Generate comprehensive security summary from the alerts fetched above
             System.out.println("4. Security Summary...");
-            try {
-                GHASClient.SecuritySummary summary = client.getAllSecurityAlerts(owner, repo);
+            try (AlertReportWriter report = AlertReportWriter.toStdout(AlertReportWriter.Format.JSON)) {
                 System.out.println("✓ Total Security Issues: " + summary.getTotalAlerts());
                 
-                String summaryJson = mapper.writeValueAsString(summary);
                 System.out.println("\nSecurity Summary JSON:");
-                System.out.println(summaryJson);
+                report.write(summary);
                 
             } catch (Exception e) {
                 System.out.println("⚠ Security Summary: " + e.getMessage());
@@ -167,7 +250,7 @@ public class GHASClientWithAppAuth {
         try {
             System.out.println("=== Repositories Accessible by GitHub App ===\n");
             
-            JsonNode installations = appAuth.getInstallations();
+            JsonNode installations = installationIndex.getInstallations();
             
             for (JsonNode installation : installations) {
                 long installationId = installation.get("id").asLong();
@@ -177,7 +260,7 @@ public class GHASClientWithAppAuth {
                 System.out.println("Installation: " + account + " (" + accountType + ")");
                 System.out.println("ID: " + installationId);
                 
-                JsonNode repos = appAuth.getInstallationRepositories(installationId);
+                JsonNode repos = appAuth.getInstallationRepositories(tokenCache.getToken(installationId));
                 int totalCount = repos.get("total_count").asInt();
                 
                 System.out.println("Repositories: " + totalCount);
@@ -202,6 +285,497 @@ public class GHASClientWithAppAuth {
         }
     }
     
+    /**
+     * Scan every repository of every installation using the default concurrency
+     */
+    public ScanResult scanAll() throws Exception {
+        return scanAll(DEFAULT_SCAN_CONCURRENCY);
+    }
+    
+    /**
+     * Scan every repository of every installation on a bounded worker pool.
+     * 
+     * Installation tokens and repository listings are fetched on the pool as
+     * well, and each alert category of each repository is its own task, so
+     * maxConcurrency bounds the number of API calls in flight. Installations
+     * that cover a whole organization are read through the three org-wide
+     * alert streams instead, falling back to the per-repository calls if
+     * those fail. A failing installation or repository is reported and
+     * skipped; it never aborts the sweep.
+     * 
+     * Each repository's alerts are written to the alert store and the report
+     * as soon as the repository is done and are then dropped. The sweep keeps
+     * the rollup and, in place of the typed Dependabot alerts, an AlertTable
+     * filled from the API JSON.
+     */
+    public ScanResult scanAll(int maxConcurrency) throws Exception {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1: " + maxConcurrency);
+        }
+        
+        System.out.println("=== Org-wide GHAS Scan (concurrency " + maxConcurrency + ") ===\n");
+        
+        long scanStart = System.nanoTime();
+        JsonNode installations = installationIndex.getInstallations();
+        METRICS.recordScanPhase("installations", System.nanoTime() - scanStart);
+        ExecutorService pool = Executors.newFixedThreadPool(maxConcurrency);
+        Set<String> publicRepositories = ConcurrentHashMap.newKeySet();
+        VulnerabilityRanker ranking = new VulnerabilityRanker(TOP_VULNERABILITIES);
+        long startTime = System.currentTimeMillis();
+        
+        // Opened up front: every repository is stored and reported as soon as it is done
+        try (AlertStore store = alertStoreFile != null ? new AlertStore(alertStoreFile) : AlertStore.openDefault();
+             AlertReportWriter report = reportFile != null ? AlertReportWriter.toFile(reportFile) : null) {
+            ScanOutput output = new ScanOutput(store, report);
+            List<CompletableFuture<Void>> installationScans = new ArrayList<>();
+            for (JsonNode installation : installations) {
+                installationScans.add(scanInstallation(installation, pool, output, publicRepositories, ranking));
+            }
+            for (CompletableFuture<Void> scan : installationScans) {
+                scan.join();
+            }
+            output.checkFailure();
+            
+            long elapsed = System.currentTimeMillis() - startTime;
+            System.out.println("\n✓ Scanned " + output.repositories + " repositories in " + elapsed + " ms" +
+                (output.failed > 0 ? " (" + output.failed + " with errors)" : ""));
+            
+            // Org rollup, added up repository by repository during the sweep
+            long aggregationStart = System.nanoTime();
+            SecurityAggregator org = output.aggregator;
+            System.out.println("  Alerts: " + org.getTotal() + " (" +
+                org.getSeverityCount(SecurityAggregator.Severity.CRITICAL) + " critical, " +
+                org.getSeverityCount(SecurityAggregator.Severity.HIGH) + " high Dependabot)");
+            System.out.println("  Most affected packages: " + org.getPackageCounts().top(5));
+            
+            // Org-wide ranking, merged from the rankers filled during the scan
+            List<VulnerabilityRanker.Candidate> top;
+            synchronized (ranking) {
+                top = ranking.top();
+            }
+            METRICS.recordScanPhase("aggregation", System.nanoTime() - aggregationStart);
+            System.out.println("\n  Top " + top.size() + " vulnerabilities across the organization:");
+            for (VulnerabilityRanker.Candidate candidate : top) {
+                System.out.println("  - " + candidate);
+            }
+            
+            // Kept for offline queries (java AlertStore --severity critical ...)
+            System.out.println("✓ Alert store: " + store.size() + " alerts");
+            if (report != null) {
+                System.out.println("✓ Report: " + reportFile + " (" + report.getRecords() + " records)");
+            }
+            System.out.println("✓ Dependabot table: " + output.dependabot.size() + " alerts, ~" +
+                output.dependabot.estimatedBytes() / 1024 + " KB");
+            METRICS.recordScanPhase("total", System.nanoTime() - scanStart);
+            System.out.println("  Metrics: " + METRICS.stats());
+            return new ScanResult(output, top);
+            
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * What scanAll() keeps of a sweep. The alerts themselves went to the
+     * alert store and the report while the sweep ran.
+     */
+    public static class ScanResult {
+        private final int repositories;
+        private final int failed;
+        private final SecurityAggregator aggregator;
+        private final AlertTable dependabot;
+        private final List<VulnerabilityRanker.Candidate> topVulnerabilities;
+        
+        ScanResult(ScanOutput output, List<VulnerabilityRanker.Candidate> topVulnerabilities) {
+            this.repositories = output.repositories;
+            this.failed = output.failed;
+            this.aggregator = output.aggregator;
+            this.dependabot = output.dependabot;
+            this.topVulnerabilities = topVulnerabilities;
+        }
+        
+        public int getRepositories() {
+            return repositories;
+        }
+        
+        /** Repositories with at least one failed alert category */
+        public int getRepositoriesWithErrors() {
+            return failed;
+        }
+        
+        /** Counts over the alerts of all three categories */
+        public SecurityAggregator getAggregator() {
+            return aggregator;
+        }
+        
+        /** Every Dependabot alert of the sweep, with the CVSS score and creation time from the API JSON */
+        public AlertTable getDependabotAlerts() {
+            return dependabot;
+        }
+        
+        public List<VulnerabilityRanker.Candidate> getTopVulnerabilities() {
+            return topVulnerabilities;
+        }
+    }
+    
+    /**
+     * Takes each repository's alerts as soon as the repository is done:
+     * progress line, alert store, report, rollup and Dependabot table. The
+     * first store or report failure stops the writing and fails scanAll()
+     * once the sweep has finished.
+     */
+    private static class ScanOutput {
+        final AlertStore store;
+        final AlertReportWriter report;
+        final SecurityAggregator aggregator = new SecurityAggregator();
+        final AlertTable dependabot = new AlertTable();
+        int repositories;
+        int failed;
+        IOException failure;
+        
+        ScanOutput(AlertStore store, AlertReportWriter report) {
+            this.store = store;
+            this.report = report;
+        }
+        
+        synchronized void accept(RepositoryAlerts alerts) {
+            repositories++;
+            if (alerts.hasErrors()) {
+                failed++;
+            }
+            System.out.println((alerts.hasErrors() ? "⚠ " : "✓ ") + "[" + repositories + "] " +
+                alerts.getFullName() + ": " + alerts.getTotalAlerts() + " alerts");
+            
+            long aggregationStart = System.nanoTime();
+            aggregator.addAll(alerts);
+            List<JsonNode> dependabotJson = alerts.getAlertJson(AlertStore.Category.DEPENDABOT);
+            if (dependabotJson != null) {
+                for (JsonNode alert : dependabotJson) {
+                    dependabot.add(alerts.getFullName(), alert);
+                }
+            }
+            METRICS.recordScanPhase("aggregation", System.nanoTime() - aggregationStart);
+            
+            if (failure != null) {
+                return;
+            }
+            try {
+                long storeStart = System.nanoTime();
+                store.put(alerts);
+                METRICS.recordScanPhase("store", System.nanoTime() - storeStart);
+                if (report != null) {
+                    long reportStart = System.nanoTime();
+                    report.write(alerts);
+                    METRICS.recordScanPhase("report", System.nanoTime() - reportStart);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        
+        synchronized void checkFailure() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+    
+    /**
+     * Wait until the rate limit scheduler allows another repository of the
+     * sweep, and return the number of requests reserved for it.
+     *
+     * GHASClient bypasses the shared transport, so its requests never pass
+     * the scheduler and have to be reserved up front, at background
+     * priority. It reads the secret and code scanning alerts; Dependabot
+     * goes through GHASAlertStreams, which the transport paces itself.
+     * Each category is paginated, so the reservation is the average number
+     * of client pages the repositories swept so far needed (at least one
+     * per category), and settleSweepBudget() charges whatever a repository
+     * needed beyond it.
+     */
+    private int awaitSweepBudget(String token) {
+        long repositories = sweptRepositories.get();
+        int reserved = repositories == 0
+            ? 2
+            : (int) Math.max(2, (sweptPages.get() + repositories - 1) / repositories);
+        acquireSweepBudget(token, reserved);
+        return reserved;
+    }
+    
+    /**
+     * Record the pages a repository took and charge the ones beyond its
+     * reservation, so a repository with many alerts slows the sweep down
+     * instead of running past the rate limit unnoticed
+     */
+    private RepositoryAlerts settleSweepBudget(String token, RepositoryAlerts alerts, int reserved) {
+        int pages = clientPages(alerts.getSecretScanningAlerts()) +
+            clientPages(alerts.getCodeScanningAlerts());
+        sweptPages.addAndGet(pages);
+        sweptRepositories.incrementAndGet();
+        if (pages > reserved) {
+            acquireSweepBudget(token, pages - reserved);
+        }
+        return alerts;
+    }
+    
+    /**
+     * Pages GHASClient needed for one category; a failed category still cost a request
+     */
+    private static int clientPages(List<?> alerts) {
+        return alerts == null || alerts.isEmpty() ? 1 : (alerts.size() + CLIENT_PAGE_SIZE - 1) / CLIENT_PAGE_SIZE;
+    }
+    
+    private static void acquireSweepBudget(String token, int requests) {
+        long start = System.nanoTime();
+        try {
+            RateLimitScheduler.getDefault().acquire(token, RateLimitScheduler.Priority.BACKGROUND, requests);
+            METRICS.recordScanPhase("rate_limit_wait", System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+    
+    /**
+     * Mint a token for one installation and scan its repositories on the
+     * pool: through the org-wide alert streams when the installation covers
+     * a whole organization, one repository at a time otherwise. Open
+     * Dependabot alerts are ranked into the sweep's ranking on the way, and
+     * every finished repository goes to the output.
+     */
+    private CompletableFuture<Void> scanInstallation(JsonNode installation,
+                                                     ExecutorService pool,
+                                                     ScanOutput output,
+                                                     Set<String> publicRepositories,
+                                                     VulnerabilityRanker ranking) {
+        long installationId = installation.get("id").asLong();
+        String account = installation.get("account").get("login").asText();
+        // Delta sync keeps per-repository snapshots, so it stays on the per-repository path
+        boolean organizationScope = !deltaSync && hasOrganizationScope(installation);
+        
+        return CompletableFuture
+            .supplyAsync(() -> {
+                try {
+                    long authStart = System.nanoTime();
+                    String token = tokenCache.getToken(installationId);
+                    METRICS.recordScanPhase("auth", System.nanoTime() - authStart);
+                    
+                    long listingStart = System.nanoTime();
+                    JsonNode repos = appAuth.getInstallationRepositories(token);
+                    METRICS.recordScanPhase("listing", System.nanoTime() - listingStart);
+                    
+                    List<JsonNode> repositories = new ArrayList<>();
+                    if (repos.has("repositories")) {
+                        for (JsonNode repo : repos.get("repositories")) {
+                            repositories.add(repo);
+                            if (!repo.path("private").asBoolean(true)) {
+                                publicRepositories.add(fullName(repo));
+                            }
+                        }
+                    }
+                    if (!organizationScope) {
+                        return scanRepositories(installationId, token, repositories, pool, output,
+                            publicRepositories, ranking);
+                    }
+                    return scanOrganization(account, token, repositories, pool, output, publicRepositories, ranking)
+                        .handle((done, e) -> {
+                            if (e == null) {
+                                return CompletableFuture.<Void>completedFuture(null);
+                            }
+                            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                            if (cause instanceof UncheckedIOException) {
+                                cause = cause.getCause();
+                            }
+                            System.out.println("⚠ Org alert endpoints failed for " + account + " (" + cause.getMessage() +
+                                "), scanning per repository");
+                            METRICS.recordRetry("org_fallback");
+                            return scanRepositories(installationId, token, repositories, pool, output,
+                                publicRepositories, ranking);
+                        })
+                        .thenCompose(scan -> scan);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, pool)
+            .thenCompose(scan -> scan)
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                System.out.println("⚠ Installation " + account + " (" + installationId + "): " + cause.getMessage());
+                return null;
+            });
+    }
+    
+    /**
+     * The org-wide alert endpoints cover an installation only when it is on
+     * an organization and sees all of its repositories
+     */
+    private static boolean hasOrganizationScope(JsonNode installation) {
+        return "Organization".equals(installation.path("target_type").asText()) &&
+            "all".equals(installation.path("repository_selection").asText());
+    }
+    
+    /**
+     * Fan the repositories out on the pool, three category calls each
+     */
+    private CompletableFuture<Void> scanRepositories(long installationId, String token,
+                                                     List<JsonNode> repositories,
+                                                     ExecutorService pool,
+                                                     ScanOutput output,
+                                                     Set<String> publicRepositories,
+                                                     VulnerabilityRanker ranking) {
+        GHASClient client = clientFor(installationId, token);
+        GHASAlertStreams streams;
+        AlertDeltaSync sync;
+        try {
+            streams = new GHASAlertStreams(token, apiBase, RateLimitScheduler.Priority.BACKGROUND);
+            sync = deltaSync ? new AlertDeltaSync(streams, AlertDeltaSync.defaultDirectory()) : null;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        List<CompletableFuture<Void>> repoScans = new ArrayList<>();
+        for (JsonNode repo : repositories) {
+            String owner = repo.get("owner").get("login").asText();
+            String name = repo.get("name").asText();
+            CompletableFuture<RepositoryAlerts> scan = sync != null
+                // Stream requests go through the shared transport, which paces them itself
+                ? CompletableFuture.supplyAsync(() -> timeRepository(() -> sync.sync(owner, name)), pool)
+                : CompletableFuture
+                    .supplyAsync(() -> awaitSweepBudget(token), pool)
+                    .thenCompose(reserved -> {
+                        long start = System.nanoTime();
+                        return RepositoryAlerts.fetchAsync(client, streams, owner, name, pool)
+                            .whenComplete((alerts, e) ->
+                                METRICS.recordScanPhase("repository", System.nanoTime() - start))
+                            .thenApplyAsync(alerts -> settleSweepBudget(token, alerts, reserved), pool);
+                    });
+            repoScans.add(scan
+                .thenApply(alerts -> rank(alerts, publicRepositories.contains(alerts.getFullName()), ranking))
+                .thenAccept(output::accept));
+        }
+        return CompletableFuture.allOf(repoScans.toArray(new CompletableFuture<?>[0]));
+    }
+    
+    /**
+     * Offer the open Dependabot alerts of a repository to the sweep's
+     * ranking. They are ranked from the API JSON they were read as, since
+     * the typed alerts lack the CVSS score, age and scope the ranking needs.
+     */
+    private static RepositoryAlerts rank(RepositoryAlerts alerts, boolean publicRepository,
+                                         VulnerabilityRanker ranking) {
+        List<JsonNode> json = alerts.getAlertJson(AlertStore.Category.DEPENDABOT);
+        if (json == null || json.isEmpty()) {
+            return alerts;
+        }
+        VulnerabilityRanker ranker = new VulnerabilityRanker(TOP_VULNERABILITIES);
+        ranker.offerAll(alerts.getFullName(), publicRepository, json.stream());
+        synchronized (ranking) {
+            ranking.merge(ranker);
+        }
+        return alerts;
+    }
+    
+    /**
+     * Read the three org-wide alert streams, one task each, and split the
+     * alerts by repository. Every listed repository goes to the output, the
+     * ones without alerts included. Fails as a whole if any stream fails,
+     * before anything reached the output, so the caller can fall back to
+     * scanning per repository. The streams are read as API JSON, which goes
+     * to the alert store as it is; the Dependabot alerts are ranked on the
+     * way. Each repository's alerts are bound to the models only when it is
+     * handed to the output, and its JSON is released after that.
+     */
+    private CompletableFuture<Void> scanOrganization(String org, String token,
+                                                     List<JsonNode> repositories,
+                                                     ExecutorService pool,
+                                                     ScanOutput output,
+                                                     Set<String> publicRepositories,
+                                                     VulnerabilityRanker ranking) throws IOException {
+        GHASAlertStreams streams = new GHASAlertStreams(token, apiBase, RateLimitScheduler.Priority.BACKGROUND);
+        VulnerabilityRanker ranker = new VulnerabilityRanker(TOP_VULNERABILITIES);
+        long start = System.nanoTime();
+        
+        CompletableFuture<Map<String, List<JsonNode>>> dependabot = CompletableFuture.supplyAsync(
+            () -> groupByRepository(streams.streamOrgDependabotAlertsJson(org).peek(alert ->
+                ranker.offer(alert.getRepository(), publicRepositories.contains(alert.getRepository()), alert.getAlert()))),
+            pool);
+        CompletableFuture<Map<String, List<JsonNode>>> secretScanning = CompletableFuture.supplyAsync(
+            () -> groupByRepository(streams.streamOrgSecretScanningAlertsJson(org)), pool);
+        CompletableFuture<Map<String, List<JsonNode>>> codeScanning = CompletableFuture.supplyAsync(
+            () -> groupByRepository(streams.streamOrgCodeScanningAlertsJson(org)), pool);
+        
+        return CompletableFuture.allOf(dependabot, secretScanning, codeScanning).thenAccept(done -> {
+            METRICS.recordScanPhase("organization", System.nanoTime() - start);
+            // Only a complete stream counts; after a failure the per-repository fallback ranks again
+            synchronized (ranking) {
+                ranking.merge(ranker);
+            }
+            
+            // Listed repositories first, then any repository created since the listing
+            Set<String> fullNames = new LinkedHashSet<>();
+            for (JsonNode repo : repositories) {
+                fullNames.add(fullName(repo));
+            }
+            fullNames.addAll(dependabot.join().keySet());
+            fullNames.addAll(secretScanning.join().keySet());
+            fullNames.addAll(codeScanning.join().keySet());
+            
+            for (String fullName : fullNames) {
+                int slash = fullName.indexOf('/');
+                if (slash < 0) {
+                    continue;
+                }
+                RepositoryAlerts alerts = new RepositoryAlerts(fullName.substring(0, slash), fullName.substring(slash + 1));
+                List<JsonNode> dependabotJson = take(dependabot.join(), fullName);
+                List<JsonNode> secretScanningJson = take(secretScanning.join(), fullName);
+                List<JsonNode> codeScanningJson = take(codeScanning.join(), fullName);
+                alerts.setDependabotAlerts(bindAll(streams, dependabotJson, DependabotAlert.class));
+                alerts.setSecretScanningAlerts(bindAll(streams, secretScanningJson, SecretScanningAlert.class));
+                alerts.setCodeScanningAlerts(bindAll(streams, codeScanningJson, CodeScanningAlert.class));
+                alerts.setAlertJson(AlertStore.Category.DEPENDABOT, dependabotJson);
+                alerts.setAlertJson(AlertStore.Category.SECRET_SCANNING, secretScanningJson);
+                alerts.setAlertJson(AlertStore.Category.CODE_SCANNING, codeScanningJson);
+                output.accept(alerts);
+            }
+        });
+    }
+    
+    private static String fullName(JsonNode repo) {
+        return repo.get("owner").get("login").asText() + "/" + repo.get("name").asText();
+    }
+    
+    /**
+     * Remove a repository's alerts from the grouped stream, so they can be
+     * collected once the repository has been handed on
+     */
+    private static List<JsonNode> take(Map<String, List<JsonNode>> alerts, String fullName) {
+        List<JsonNode> taken = alerts.remove(fullName);
+        return taken != null ? taken : Collections.<JsonNode>emptyList();
+    }
+    
+    private static <T> List<T> bindAll(GHASAlertStreams streams, List<JsonNode> json, Class<T> type) {
+        List<T> alerts = new ArrayList<>(json.size());
+        for (JsonNode alert : json) {
+            alerts.add(streams.bind(alert, type));
+        }
+        return alerts;
+    }
+    
+    private static <T> Map<String, List<T>> groupByRepository(Stream<GHASAlertStreams.OrgAlert<T>> alerts) {
+        try (Stream<GHASAlertStreams.OrgAlert<T>> stream = alerts) {
+            return stream.collect(Collectors.groupingBy(GHASAlertStreams.OrgAlert::getRepository,
+                Collectors.mapping(GHASAlertStreams.OrgAlert::getAlert, Collectors.toList())));
+        }
+    }
+    
+    private static RepositoryAlerts timeRepository(Supplier<RepositoryAlerts> fetch) {
+        long start = System.nanoTime();
+        try {
+            return fetch.get();
+        } finally {
+            METRICS.recordScanPhase("repository", System.nanoTime() - start);
+        }
+    }
+    
     /**
      * Example usage
      */
@@ -219,6 +793,33 @@ public class GHASClientWithAppAuth {
             // Create GHAS client with App authentication
             GHASClientWithAppAuth ghasClient = new GHASClientWithAppAuth(appId, privateKeyPath);
             
+            // Incremental mode: --sync, combinable with --scan-all
+            List<String> options = new ArrayList<>(Arrays.asList(args));
+            ghasClient.setDeltaSync(options.remove("--sync"));
+            
+            // Streamed report of the sweep: --report <file>[.ndjson][.gz]
+            int reportOption = options.indexOf("--report");
+            if (reportOption >= 0 && reportOption + 1 < options.size()) {
+                ghasClient.setReportFile(new File(options.get(reportOption + 1)));
+                options.subList(reportOption, reportOption + 2).clear();
+            }
+            
+            // Prometheus endpoint for long sweeps: --metrics-port <port>
+            int metricsOption = options.indexOf("--metrics-port");
+            if (metricsOption >= 0 && metricsOption + 1 < options.size()) {
+                int port = Integer.parseInt(options.get(metricsOption + 1));
+                options.subList(metricsOption, metricsOption + 2).clear();
+                METRICS.serve(port);
+                System.out.println("✓ Metrics at http://127.0.0.1:" + port + "/metrics");
+            }
+            
+            // Org-wide sweep: --scan-all [concurrency]
+            if (!options.isEmpty() && "--scan-all".equals(options.get(0))) {
+                int concurrency = options.size() > 1 ? Integer.parseInt(options.get(1)) : DEFAULT_SCAN_CONCURRENCY;
+                ghasClient.scanAll(concurrency);
+                return;
+            }
+            
             // List all accessible repositories
             ghasClient.listAccessibleRepositories();
             
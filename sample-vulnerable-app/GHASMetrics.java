@@ -0,0 +1,627 @@
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * In-process metrics for the GHAS tools, exportable in the Prometheus text
+ * format.
+ *
+ * Counters, gauges and histograms are registered by name and carry label
+ * values per child series. Updates are lock-free (LongAdder/DoubleAdder per
+ * series), so instrumenting the hot paths costs a map lookup and an add.
+ *
+ * What is recorded, and where:
+ *   ghas_http_*                 every request of the shared transport (httpInterceptor)
+ *   ghas_rate_limit_remaining   last X-RateLimit-Remaining seen per resource
+ *   ghas_client_call_*          GHASClient calls, which bypass the shared transport
+ *   ghas_retries_total          work sent again after a failure (RepositoryInventory, scanAll())
+ *   ghas_json_decode_*          alert pages decoded by AlertPageDecoder
+ *   ghas_token_cache_*          InstallationTokenCache hits and misses
+ *   ghas_scan_phase_seconds     where GHASClientWithAppAuth.scanAll() spends its time
+ *
+ * Read the values in-process with the getters or stats(), or call
+ * serve(port) to expose GET /metrics on localhost for scraping.
+ */
+public class GHASMetrics {
+
+    /** Bucket upper bounds in seconds, from a cache hit to a slow paginated call */
+    public static final double[] LATENCY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+    /** Bucket upper bounds in seconds for decoding one page */
+    public static final double[] DECODE_BUCKETS = {0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25};
+
+    private static final GHASMetrics DEFAULT = new GHASMetrics();
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+    private final HttpMetrics httpInterceptor;
+
+    private final Histogram httpDuration;
+    private final Counter httpRequests;
+    private final Counter httpBytes;
+    private final Counter httpPages;
+    private final Counter httpErrors;
+    private final Counter retries;
+    private final Gauge rateLimitRemaining;
+    private final Histogram clientCallDuration;
+    private final Counter clientCallErrors;
+    private final Histogram decodeDuration;
+    private final Counter decodedAlerts;
+    private final Counter tokenCacheRequests;
+    private final Histogram scanPhaseDuration;
+
+    public GHASMetrics() {
+        httpDuration = histogram("ghas_http_request_duration_seconds",
+            "Time from sending a request to receiving the response headers", LATENCY_BUCKETS, "endpoint", "method");
+        httpRequests = counter("ghas_http_requests_total",
+            "HTTP requests by endpoint and status code", "endpoint", "method", "code");
+        httpBytes = counter("ghas_http_response_bytes_total",
+            "Response body bytes read", "endpoint");
+        httpPages = counter("ghas_http_pages_total",
+            "Successful responses of paginated list endpoints", "endpoint");
+        httpErrors = counter("ghas_http_errors_total",
+            "Failed requests by reason: rate_limited, server_error or network", "endpoint", "reason");
+        retries = counter("ghas_retries_total",
+            "Work sent again after a failure: inventory_batch (a GraphQL batch re-run in smaller batches) or " +
+            "org_fallback (an organization re-scanned per repository after its alert streams failed). " +
+            "GHASClient retries internally without telling, see ghas_client_call_duration_seconds", "operation");
+        rateLimitRemaining = gauge("ghas_rate_limit_remaining",
+            "X-RateLimit-Remaining of the most recent response", "resource");
+        clientCallDuration = histogram("ghas_client_call_duration_seconds",
+            "Duration of GHASClient calls, including all their pages and internal retries", LATENCY_BUCKETS, "call");
+        clientCallErrors = counter("ghas_client_call_errors_total",
+            "GHASClient calls that failed after their internal retries", "call");
+        decodeDuration = histogram("ghas_json_decode_seconds",
+            "Time spent binding the alerts of one page, including body reads as the parser advances",
+            DECODE_BUCKETS, "type");
+        decodedAlerts = counter("ghas_json_decoded_alerts_total",
+            "Alerts bound by AlertPageDecoder", "type");
+        tokenCacheRequests = counter("ghas_token_cache_requests_total",
+            "Installation token lookups by result (hit or miss)", "result");
+        scanPhaseDuration = histogram("ghas_scan_phase_seconds",
+            "Time spent per phase of an org-wide scan", LATENCY_BUCKETS, "phase");
+        gaugeFunction("ghas_token_cache_hit_ratio",
+            "Share of installation token lookups served from the cache", this::getTokenCacheHitRatio);
+        httpInterceptor = new HttpMetrics();
+    }
+
+    /**
+     * Process-wide registry used by the shared transport and the tools
+     */
+    public static GHASMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Interceptor recording latency, status, bytes, pages, errors and rate
+     * limit headers of each request. GitHubHttpTransport installs it last,
+     * so it times the network round trip and not the pacing in front of it.
+     */
+    public Interceptor httpInterceptor() {
+        return httpInterceptor;
+    }
+
+    public Counter counter(String name, String help, String... labelNames) {
+        return register(new Counter(name, help, labelNames));
+    }
+
+    public Gauge gauge(String name, String help, String... labelNames) {
+        return register(new Gauge(name, help, labelNames));
+    }
+
+    public Histogram histogram(String name, String help, double[] buckets, String... labelNames) {
+        return register(new Histogram(name, help, buckets, labelNames));
+    }
+
+    /**
+     * Unlabelled gauge read from the supplier at export time
+     */
+    public void gaugeFunction(String name, String help, DoubleSupplier value) {
+        register(new FunctionGauge(name, help, value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <F extends Family> F register(F family) {
+        Family existing = families.putIfAbsent(family.name, family);
+        if (existing == null) {
+            return family;
+        }
+        if (existing.getClass() != family.getClass() || !Arrays.equals(existing.labelNames, family.labelNames)) {
+            throw new IllegalArgumentException("Metric " + family.name + " is already registered with another type or labels");
+        }
+        return (F) existing;
+    }
+
+    /**
+     * Time a GHASClient call. GHASClient uses its own HTTP client, so this is
+     * the only view of its latency; failures are counted and rethrown.
+     */
+    public <T> T timeClientCall(String call, Callable<T> body) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return body.call();
+        } catch (Exception e) {
+            clientCallErrors.inc(call);
+            throw e;
+        } finally {
+            clientCallDuration.observeNanos(System.nanoTime() - start, call);
+        }
+    }
+
+    /**
+     * Record the time spent binding one page of alerts
+     */
+    public void recordDecode(String type, long nanos, int alerts) {
+        decodeDuration.observeNanos(nanos, type);
+        decodedAlerts.add(alerts, type);
+    }
+
+    /**
+     * Count one retry of an operation after a failure
+     */
+    public void recordRetry(String operation) {
+        retries.inc(operation);
+    }
+
+    public void recordTokenCacheLookup(boolean hit) {
+        tokenCacheRequests.inc(hit ? "hit" : "miss");
+    }
+
+    public void recordScanPhase(String phase, long nanos) {
+        scanPhaseDuration.observeNanos(nanos, phase);
+    }
+
+    public double getTokenCacheHitRatio() {
+        long hits = tokenCacheRequests.get("hit");
+        long total = hits + tokenCacheRequests.get("miss");
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    public long getHttpRequests() {
+        return httpDuration.getCount();
+    }
+
+    public long getHttpBytes() {
+        return httpBytes.getTotal();
+    }
+
+    public long getHttpPages() {
+        return httpPages.getTotal();
+    }
+
+    public long getHttpErrors() {
+        return httpErrors.getTotal();
+    }
+
+    public long getRetries() {
+        return retries.getTotal();
+    }
+
+    public double getDecodeSeconds() {
+        return decodeDuration.getSum();
+    }
+
+    /**
+     * One-line summary for progress output
+     */
+    public String stats() {
+        return String.format("http=%d (%d pages, %d errors, %.1f MB, %.1fs) retries=%d client calls=%d (%.1fs) decode=%.2fs token cache hit ratio=%.2f",
+            getHttpRequests(), getHttpPages(), getHttpErrors(), getHttpBytes() / 1e6, httpDuration.getSum(), getRetries(),
+            clientCallDuration.getCount(), clientCallDuration.getSum(), getDecodeSeconds(), getTokenCacheHitRatio());
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format (version 0.0.4)
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            family.write(out);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Serve scrape() as GET /metrics on the loopback interface. The server
+     * runs on a daemon thread; stop it with HttpServer.stop(0).
+     */
+    public HttpServer serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ghas-metrics-exporter");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        return server;
+    }
+
+    /**
+     * Endpoint label for a URL: owner, repository, organization, numeric IDs
+     * and file paths are replaced by placeholders to keep the number of series
+     * bounded, e.g. /repos/{owner}/{repo}/dependabot/alerts
+     */
+    static String endpoint(HttpUrl url) {
+        List<String> segments = url.pathSegments();
+        StringBuilder endpoint = new StringBuilder();
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            if (segment.isEmpty()) {
+                continue;
+            }
+            String first = segments.get(0);
+            endpoint.append('/');
+            if ("repos".equals(first) && (i == 1 || i == 2)) {
+                endpoint.append(i == 1 ? "{owner}" : "{repo}");
+            } else if (("orgs".equals(first) || "users".equals(first)) && i == 1) {
+                endpoint.append("{org}");
+            } else if (i > 0 && ("contents".equals(segments.get(i - 1)) || "trees".equals(segments.get(i - 1)))) {
+                endpoint.append("contents".equals(segments.get(i - 1)) ? "{path}" : "{sha}");
+                break;
+            } else if (isNumber(segment)) {
+                endpoint.append("{id}");
+            } else {
+                endpoint.append(segment);
+            }
+        }
+        return endpoint.length() > 0 ? endpoint.toString() : "/";
+    }
+
+    private static boolean isNumber(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return !segment.isEmpty();
+    }
+
+    private static String format(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private class HttpMetrics implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            String endpoint = endpoint(request.url());
+            String method = request.method();
+            long start = System.nanoTime();
+
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                httpDuration.observeNanos(System.nanoTime() - start, endpoint, method);
+                httpErrors.inc(endpoint, "network");
+                throw e;
+            }
+            httpDuration.observeNanos(System.nanoTime() - start, endpoint, method);
+
+            int code = response.code();
+            httpRequests.inc(endpoint, method, Integer.toString(code));
+            if (code == 429 || (code == 403 && (response.header("Retry-After") != null
+                    || "0".equals(response.header("X-RateLimit-Remaining"))))) {
+                httpErrors.inc(endpoint, "rate_limited");
+            } else if (code >= 500) {
+                httpErrors.inc(endpoint, "server_error");
+            } else if ((response.isSuccessful() || code == 304) && request.url().queryParameter("per_page") != null) {
+                httpPages.inc(endpoint);
+            }
+
+            String remaining = response.header("X-RateLimit-Remaining");
+            if (remaining != null) {
+                try {
+                    String resource = response.header("X-RateLimit-Resource");
+                    rateLimitRemaining.set(Long.parseLong(remaining.trim()), resource != null ? resource : "core");
+                } catch (NumberFormatException ignored) {
+                    // Not a number; keep the last good value
+                }
+            }
+
+            ResponseBody body = response.body();
+            if (body == null) {
+                return response;
+            }
+            ForwardingSource counting = new ForwardingSource(body.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        httpBytes.add(read, endpoint);
+                    }
+                    return read;
+                }
+            };
+            return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(counting)))
+                .build();
+        }
+    }
+
+    /**
+     * A named metric with one child series per combination of label values
+     */
+    private abstract static class Family {
+        final String name;
+        final String help;
+        final String type;
+        final String[] labelNames;
+
+        Family(String name, String help, String type, String[] labelNames) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.labelNames = labelNames;
+        }
+
+        List<String> key(String[] labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException(name + " expects labels " + Arrays.toString(labelNames) +
+                    ", got " + Arrays.toString(labelValues));
+            }
+            return labelValues.length == 0 ? Collections.emptyList() : Arrays.asList(labelValues.clone());
+        }
+
+        void appendSeries(StringBuilder out, String suffix, List<String> labelValues, String extraName,
+                          String extraValue, String value) {
+            out.append(name).append(suffix);
+            if (!labelValues.isEmpty() || extraName != null) {
+                out.append('{');
+                for (int i = 0; i < labelValues.size(); i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    out.append(labelNames[i]).append("=\"").append(escape(labelValues.get(i))).append('"');
+                }
+                if (extraName != null) {
+                    out.append(labelValues.isEmpty() ? "" : ",").append(extraName).append("=\"").append(extraValue).append('"');
+                }
+                out.append('}');
+            }
+            out.append(' ').append(value).append('\n');
+        }
+
+        abstract void write(StringBuilder out);
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+
+    public static class Counter extends Family {
+        private final ConcurrentHashMap<List<String>, LongAdder> series = new ConcurrentHashMap<>();
+
+        Counter(String name, String help, String[] labelNames) {
+            super(name, help, "counter", labelNames);
+        }
+
+        public void inc(String... labelValues) {
+            add(1, labelValues);
+        }
+
+        public void add(long amount, String... labelValues) {
+            LongAdder adder = series.get(Arrays.asList(labelValues));
+            if (adder == null) {
+                adder = series.computeIfAbsent(key(labelValues), k -> new LongAdder());
+            }
+            adder.add(amount);
+        }
+
+        public long get(String... labelValues) {
+            LongAdder adder = series.get(Arrays.asList(labelValues));
+            return adder != null ? adder.sum() : 0;
+        }
+
+        /**
+         * Sum over all label values
+         */
+        public long getTotal() {
+            long total = 0;
+            for (LongAdder adder : series.values()) {
+                total += adder.sum();
+            }
+            return total;
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            for (Map.Entry<List<String>, LongAdder> entry : series.entrySet()) {
+                appendSeries(out, "", entry.getKey(), null, null, Long.toString(entry.getValue().sum()));
+            }
+        }
+    }
+
+    public static class Gauge extends Family {
+        private final ConcurrentHashMap<List<String>, AtomicLong> series = new ConcurrentHashMap<>();
+
+        Gauge(String name, String help, String[] labelNames) {
+            super(name, help, "gauge", labelNames);
+        }
+
+        public void set(double value, String... labelValues) {
+            AtomicLong bits = series.get(Arrays.asList(labelValues));
+            if (bits == null) {
+                bits = series.computeIfAbsent(key(labelValues), k -> new AtomicLong());
+            }
+            bits.set(Double.doubleToRawLongBits(value));
+        }
+
+        public double get(String... labelValues) {
+            AtomicLong bits = series.get(Arrays.asList(labelValues));
+            return bits != null ? Double.longBitsToDouble(bits.get()) : Double.NaN;
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            for (Map.Entry<List<String>, AtomicLong> entry : series.entrySet()) {
+                appendSeries(out, "", entry.getKey(), null, null, format(Double.longBitsToDouble(entry.getValue().get())));
+            }
+        }
+    }
+
+    private static class FunctionGauge extends Family {
+        private final DoubleSupplier value;
+
+        FunctionGauge(String name, String help, DoubleSupplier value) {
+            super(name, help, "gauge", new String[0]);
+            this.value = value;
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            appendSeries(out, "", Collections.emptyList(), null, null, format(value.getAsDouble()));
+        }
+    }
+
+    public static class Histogram extends Family {
+        private final double[] buckets;
+        private final ConcurrentHashMap<List<String>, Series> series = new ConcurrentHashMap<>();
+
+        Histogram(String name, String help, double[] buckets, String[] labelNames) {
+            super(name, help, "histogram", labelNames);
+            this.buckets = buckets.clone();
+            Arrays.sort(this.buckets);
+        }
+
+        public void observeNanos(long nanos, String... labelValues) {
+            observe(nanos / 1e9, labelValues);
+        }
+
+        public void observe(double value, String... labelValues) {
+            Series s = series.get(Arrays.asList(labelValues));
+            if (s == null) {
+                s = series.computeIfAbsent(key(labelValues), k -> new Series(buckets.length));
+            }
+            int bucket = Arrays.binarySearch(buckets, value);
+            s.counts[bucket >= 0 ? bucket : -bucket - 1].increment();
+            s.sum.add(value);
+        }
+
+        /**
+         * Observations over all label values
+         */
+        public long getCount() {
+            long count = 0;
+            for (Series s : series.values()) {
+                count += s.count();
+            }
+            return count;
+        }
+
+        public long getCount(String... labelValues) {
+            Series s = series.get(Arrays.asList(labelValues));
+            return s != null ? s.count() : 0;
+        }
+
+        /**
+         * Sum of observed values over all label values
+         */
+        public double getSum() {
+            double sum = 0;
+            for (Series s : series.values()) {
+                sum += s.sum.sum();
+            }
+            return sum;
+        }
+
+        public double getSum(String... labelValues) {
+            Series s = series.get(Arrays.asList(labelValues));
+            return s != null ? s.sum.sum() : 0;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile, or NaN without observations
+         */
+        public double getQuantileUpperBound(double quantile, String... labelValues) {
+            Series s = series.get(Arrays.asList(labelValues));
+            long count = s != null ? s.count() : 0;
+            if (count == 0) {
+                return Double.NaN;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += s.counts[i].sum();
+                if (seen >= rank) {
+                    return buckets[i];
+                }
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            for (Map.Entry<List<String>, Series> entry : series.entrySet()) {
+                Series s = entry.getValue();
+                List<String> labels = entry.getKey();
+                long cumulative = 0;
+                for (int i = 0; i < buckets.length; i++) {
+                    cumulative += s.counts[i].sum();
+                    appendSeries(out, "_bucket", labels, "le", format(buckets[i]), Long.toString(cumulative));
+                }
+                cumulative += s.counts[buckets.length].sum();
+                appendSeries(out, "_bucket", labels, "le", "+Inf", Long.toString(cumulative));
+                appendSeries(out, "_sum", labels, null, null, Double.toString(s.sum.sum()));
+                appendSeries(out, "_count", labels, null, null, Long.toString(cumulative));
+            }
+        }
+
+        private static class Series {
+            /** Non-cumulative counts; the last slot holds values above the largest bound */
+            final LongAdder[] counts;
+            final DoubleAdder sum = new DoubleAdder();
+
+            Series(int buckets) {
+                counts = new LongAdder[buckets + 1];
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = new LongAdder();
+                }
+            }
+
+            long count() {
+                long count = 0;
+                for (LongAdder bucket : counts) {
+                    count += bucket.sum();
+                }
+                return count;
+            }
+        }
+    }
+}
@@ -19,7 +19,7 @@ public class GitHubAppConnectivityTest {
     private static final String GITHUB_API_BASE = "https://api.github.com";
     
     public GitHubAppConnectivityTest() {
-        this.httpClient = new OkHttpClient();
+        this.httpClient = GitHubHttpTransport.shared();
         this.mapper = new ObjectMapper();
     }
     
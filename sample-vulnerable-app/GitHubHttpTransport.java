@@ -0,0 +1,75 @@
+import okhttp3.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared HTTP transport for all GHAS tools.
+ *
+ * Every tool used to create its own OkHttpClient, so none of them shared
+ * connections and each paid for its own TLS handshakes. This class holds one
+ * OkHttpClient per process with a single connection pool and dispatcher.
+ * HTTP/2 is preferred so concurrent requests to api.github.com multiplex over
+ * one connection. Clients that need different settings should derive them
+ * with shared().newBuilder(), which keeps the pool and dispatcher.
+ *
+ * Requests are paced by RateLimitScheduler, then bounded in number by
+ * AdaptiveConcurrencyLimiter, before they reach the cache. GHASMetrics
+ * records each request that gets past the cache.
+ *
+ * Tuning via system properties:
+ *   ghas.http.maxRequests          total concurrent requests (default 64)
+ *   ghas.http.maxRequestsPerHost   concurrent requests per host (default 16)
+ *   ghas.http.maxIdleConnections   idle connections kept in the pool (default 8)
+ *   ghas.http.keepAliveSeconds     idle connection keep-alive (default 300)
+ *   ghas.http.timeoutSeconds       connect/read/write timeout (default 30)
+ */
+public final class GitHubHttpTransport {
+
+    private static OkHttpClient shared;
+
+    private GitHubHttpTransport() {
+    }
+
+    /**
+     * The process-wide client
+     */
+    public static synchronized OkHttpClient shared() {
+        if (shared == null) {
+            shared = build();
+        }
+        return shared;
+    }
+
+    private static OkHttpClient build() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Integer.getInteger("ghas.http.maxRequests", 64));
+        dispatcher.setMaxRequestsPerHost(Integer.getInteger("ghas.http.maxRequestsPerHost", 16));
+
+        ConnectionPool pool = new ConnectionPool(
+            Integer.getInteger("ghas.http.maxIdleConnections", 8),
+            Long.getLong("ghas.http.keepAliveSeconds", 300L),
+            TimeUnit.SECONDS);
+
+        long timeout = Long.getLong("ghas.http.timeoutSeconds", 30L);
+
+        try {
+            return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(pool)
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(timeout, TimeUnit.SECONDS)
+                .readTimeout(timeout, TimeUnit.SECONDS)
+                .writeTimeout(timeout, TimeUnit.SECONDS)
+                .addInterceptor(RateLimitScheduler.getDefault())
+                .addInterceptor(AdaptiveConcurrencyLimiter.getDefault())
+                .addInterceptor(ConditionalRequestCache.getDefault())
+                .addInterceptor(GHASMetrics.getDefault().httpInterceptor())
+                .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the HTTP cache", e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory index from account login and repository full name to the
+ * GitHub App installation that covers them.
+ *
+ * The index is built from getInstallations() and, for installations that
+ * only cover selected repositories, getInstallationRepositories(). Lookups
+ * are hash map reads against an immutable snapshot. The snapshot is rebuilt
+ * once it is older than the TTL; while one caller rebuilds it, the others
+ * keep using the previous snapshot. An installation whose token or
+ * repository listing fails is left out of the snapshot; the others are
+ * still indexed.
+ */
+public class InstallationIndex {
+
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /** A miss forces a rebuild (to pick up new installations) at most this often */
+    private static final long MIN_REBUILD_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final GitHubAppJWTAuth appAuth;
+    private final InstallationTokenCache tokenCache;
+    private final long ttlMillis;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot;
+
+    public InstallationIndex(GitHubAppJWTAuth appAuth, InstallationTokenCache tokenCache) {
+        this(appAuth, tokenCache, DEFAULT_TTL_MILLIS);
+    }
+
+    public InstallationIndex(GitHubAppJWTAuth appAuth, InstallationTokenCache tokenCache, long ttlMillis) {
+        this.appAuth = appAuth;
+        this.tokenCache = tokenCache;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Find the installation covering a repository
+     */
+    public long findInstallation(String owner, String repo) throws Exception {
+        Snapshot current = current();
+        Long installationId = lookup(current, owner, repo);
+
+        if (installationId == null && System.currentTimeMillis() - current.builtAt >= MIN_REBUILD_INTERVAL_MILLIS) {
+            installationId = lookup(rebuild(current), owner, repo);
+        }
+        if (installationId == null) {
+            throw new Exception("No GitHub App installation found for: " + owner + "/" + repo);
+        }
+        return installationId;
+    }
+
+    /**
+     * All installations of the app, as returned by the last rebuild
+     */
+    public JsonNode getInstallations() throws Exception {
+        return current().installations;
+    }
+
+    /**
+     * Drop the snapshot so the next lookup rebuilds it
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private static Long lookup(Snapshot snapshot, String owner, String repo) {
+        Long installationId = snapshot.byRepository.get(key(owner + "/" + repo));
+        return installationId != null ? installationId : snapshot.byOwner.get(key(owner));
+    }
+
+    private Snapshot current() throws Exception {
+        Snapshot current = snapshot;
+
+        if (current == null) {
+            return rebuild(null);
+        }
+        if (System.currentTimeMillis() - current.builtAt >= ttlMillis && rebuildLock.tryLock()) {
+            // Stale: this caller rebuilds, everybody else keeps reading the old snapshot
+            try {
+                return rebuild(current);
+            } finally {
+                rebuildLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    private Snapshot rebuild(Snapshot seen) throws Exception {
+        rebuildLock.lock();
+        try {
+            if (snapshot != seen && snapshot != null) {
+                return snapshot;
+            }
+
+            JsonNode installations;
+            try {
+                installations = appAuth.getInstallations();
+            } catch (Exception e) {
+                if (seen == null) {
+                    throw e;
+                }
+                // Keep serving the old snapshot; the next lookup past the TTL tries again
+                System.err.println("Could not refresh the installation index: " + e.getMessage());
+                return seen;
+            }
+            Map<String, Long> byOwner = new HashMap<>();
+            Map<String, Long> byRepository = new HashMap<>();
+
+            for (JsonNode installation : installations) {
+                long installationId = installation.get("id").asLong();
+                String account = installation.get("account").get("login").asText();
+
+                if ("all".equals(installation.path("repository_selection").asText())) {
+                    // Every repository of the account is covered, the owner entry is enough
+                    byOwner.put(key(account), installationId);
+                    continue;
+                }
+
+                // Selected repositories only: no owner entry, a repository outside the
+                // selection must miss (and trigger a rebuild) rather than land here
+                try {
+                    JsonNode repos = appAuth.getInstallationRepositories(tokenCache.getToken(installationId));
+                    for (JsonNode repo : repos.get("repositories")) {
+                        byRepository.put(key(repo.get("full_name").asText()), installationId);
+                    }
+                } catch (Exception e) {
+                    // A suspended installation or a failed request must not take the whole index down
+                    System.err.println("Skipping installation " + account + " (" + installationId + ") in the index: " +
+                        e.getMessage());
+                }
+            }
+
+            Snapshot rebuilt = new Snapshot(installations, byOwner, byRepository);
+            snapshot = rebuilt;
+            return rebuilt;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /** GitHub logins and repository names are case-insensitive */
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static class Snapshot {
+        final JsonNode installations;
+        final Map<String, Long> byOwner;
+        final Map<String, Long> byRepository;
+        final long builtAt = System.currentTimeMillis();
+
+        Snapshot(JsonNode installations, Map<String, Long> byOwner, Map<String, Long> byRepository) {
+            this.installations = installations;
+            this.byOwner = Collections.unmodifiableMap(byOwner);
+            this.byRepository = Collections.unmodifiableMap(byRepository);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of GitHub App installation access tokens keyed by installation ID.
+ *
+ * Tokens are reused until shortly before the expiry GitHub reports for
+ * them. A token that is still in use is refreshed in the background ahead
+ * of expiry, and concurrent callers asking for the same installation share
+ * a single in-flight mint instead of each requesting their own token.
+ */
+public class InstallationTokenCache implements AutoCloseable {
+
+    /**
+     * Mints a new installation access token
+     */
+    public interface TokenSource {
+        GitHubAppJWTAuth.InstallationToken mintToken(long installationId) throws Exception;
+    }
+
+    /** Tokens are refreshed this long before they expire */
+    public static final long REFRESH_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final TokenSource source;
+    private final ConcurrentHashMap<Long, CachedToken> tokens = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CompletableFuture<CachedToken>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public InstallationTokenCache(TokenSource source) {
+        this.source = source;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "installation-token-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get a valid token for an installation, minting one only if needed
+     */
+    public String getToken(long installationId) throws Exception {
+        long now = System.currentTimeMillis();
+        CachedToken cached = tokens.get(installationId);
+
+        if (cached != null && now < cached.expiresAt) {
+            hits.incrementAndGet();
+            GHASMetrics.getDefault().recordTokenCacheLookup(true);
+            cached.used = true;
+            if (now >= cached.refreshAt) {
+                // Still valid: serve it and let the refresh happen off the caller's thread.
+                // A refresh already in flight is joined rather than queued again.
+                mint(installationId, refresher);
+            }
+            return cached.token;
+        }
+
+        misses.incrementAndGet();
+        GHASMetrics.getDefault().recordTokenCacheLookup(false);
+        try {
+            CachedToken minted = mint(installationId, Runnable::run).get();
+            minted.used = true;
+            return minted.token;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Drop a cached token, e.g. after the API rejected it
+     */
+    public void invalidate(long installationId) {
+        forget(tokens.remove(installationId));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Single-flight mint: the first caller registers the future and runs the
+     * request on the executor, everyone else arriving while it is in
+     * progress gets the same future.
+     */
+    private CompletableFuture<CachedToken> mint(long installationId, Executor executor) {
+        CompletableFuture<CachedToken> future = new CompletableFuture<>();
+        CompletableFuture<CachedToken> existing = inFlight.putIfAbsent(installationId, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        executor.execute(() -> {
+            try {
+                // A mint that finished between the caller's miss and putIfAbsent already stored a fresh token
+                CachedToken current = tokens.get(installationId);
+                if (current != null && System.currentTimeMillis() < current.refreshAt) {
+                    future.complete(current);
+                    return;
+                }
+                GitHubAppJWTAuth.InstallationToken token = source.mintToken(installationId);
+                CachedToken minted = new CachedToken(token.getToken(), token.getExpiresAt());
+                ConditionalRequestCache.registerCredential(minted.token, "installation:" + installationId);
+                forget(tokens.put(installationId, minted));
+                scheduleRefresh(installationId, minted);
+                future.complete(minted);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                inFlight.remove(installationId, future);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Refresh ahead of expiry, but only for tokens that were used since they
+     * were minted so idle installations do not keep minting forever.
+     */
+    private void scheduleRefresh(long installationId, CachedToken token) {
+        long delay = Math.max(0, token.refreshAt - System.currentTimeMillis());
+        refresher.schedule(() -> {
+            if (token.used) {
+                refreshIfCurrent(installationId, token);
+            } else if (tokens.remove(installationId, token)) {
+                forget(token);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Mint a replacement unless another refresh already replaced this token
+     */
+    private void refreshIfCurrent(long installationId, CachedToken token) {
+        if (tokens.get(installationId) == token) {
+            mint(installationId, Runnable::run);
+        }
+    }
+
+    private static void forget(CachedToken token) {
+        if (token != null) {
+            ConditionalRequestCache.unregisterCredential(token.token);
+        }
+    }
+
+    private static class CachedToken {
+        final String token;
+        final long expiresAt;
+        final long refreshAt;
+        volatile boolean used;
+
+        CachedToken(String token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+            this.refreshAt = expiresAt - REFRESH_MARGIN_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,729 @@
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local stand-in for the parts of the GitHub REST API the GHAS tools use.
+ *
+ * Serves synthetic data for an app with a configurable number of
+ * organization installations, repositories per installation and alerts per
+ * category:
+ *
+ *   GET  /app
+ *   GET  /app/installations
+ *   POST /app/installations/{id}/access_tokens
+ *   GET  /installation/repositories
+ *   GET  /repos/{owner}/{repo}
+ *   GET  /repos/{owner}/{repo}/{dependabot|code-scanning|secret-scanning}/alerts
+ *   GET  /orgs/{org}/{dependabot|code-scanning|secret-scanning}/alerts
+ *   POST /graphql   aliased repository(owner, name) queries, as sent by RepositoryInventory
+ *
+ * Lists are paginated with page/per_page and a Link header like the real
+ * API. Every response carries X-RateLimit-* headers counted per
+ * credential, and responses can be delayed and failed at random to
+ * exercise the transport's pacing, backoff and error paths. Any JWT is
+ * accepted; installation tokens are minted by the server itself.
+ *
+ * Used by ScanLoadTest; run main to poke at it with curl.
+ */
+public class MockGitHubServer implements Closeable {
+
+    /** Installation IDs are INSTALLATION_ID_BASE + index */
+    public static final long INSTALLATION_ID_BASE = 1000;
+
+    private static final String TOKEN_PREFIX = "ghs_mock_";
+    private static final int DEFAULT_PAGE_SIZE = 30;
+    private static final Instant NEWEST_UPDATE = Instant.parse("2024-06-01T00:00:00Z");
+
+    /** MockWebServer logs every request at INFO; held here so the level setting is not collected */
+    private static final Logger SERVER_LOG = Logger.getLogger(MockWebServer.class.getName());
+
+    private static final String[] PACKAGES = {"log4j-core", "jackson-databind", "commons-collections4", "spring-web", "mysql-connector-java"};
+    private static final String[] SEVERITIES = {"critical", "high", "medium", "low"};
+    private static final String[] RULES = {"java/sql-injection", "java/xss", "java/path-injection", "java/weak-cryptographic-algorithm"};
+    private static final String[] SECRET_TYPES = {"github_personal_access_token", "aws_access_key_id", "slack_api_token"};
+
+    private final MockWebServer server = new MockWebServer();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ConcurrentHashMap<String, RateWindow> rateWindows = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, byte[]> renderedPages = new ConcurrentHashMap<>();
+    private final AtomicLong tokenSequence = new AtomicLong();
+    private final Random random = new Random(42);
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong alertsServed = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    private int installations = 2;
+    private int repositoriesPerInstallation = 25;
+    private int alertsPerCategory = 150;
+    private int maxPageSize = 100;
+    private long latencyMillis = 20;
+    private long latencyJitterMillis = 10;
+    private int rateLimit = 5000;
+    private long rateLimitWindowMillis = TimeUnit.HOURS.toMillis(1);
+    private double errorRate;
+    private double secondaryRateLimitRate;
+    private int maxGraphQLRepositories = Integer.MAX_VALUE;
+    private boolean organizationAlerts = true;
+
+    public MockGitHubServer setInstallations(int installations) {
+        this.installations = installations;
+        return this;
+    }
+
+    public MockGitHubServer setRepositoriesPerInstallation(int repositoriesPerInstallation) {
+        this.repositoriesPerInstallation = repositoriesPerInstallation;
+        return this;
+    }
+
+    /**
+     * Alerts in each of the three categories of every repository
+     */
+    public MockGitHubServer setAlertsPerCategory(int alertsPerCategory) {
+        this.alertsPerCategory = alertsPerCategory;
+        return this;
+    }
+
+    /**
+     * Upper bound for per_page; GitHub allows 100
+     */
+    public MockGitHubServer setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+        return this;
+    }
+
+    /**
+     * Delay before the response headers, plus up to jitterMillis of random extra delay
+     */
+    public MockGitHubServer setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = jitterMillis;
+        return this;
+    }
+
+    /**
+     * Requests per credential per window before the server answers 403 with X-RateLimit-Remaining: 0
+     */
+    public MockGitHubServer setRateLimit(int rateLimit, long windowMillis) {
+        this.rateLimit = rateLimit;
+        this.rateLimitWindowMillis = windowMillis;
+        return this;
+    }
+
+    /**
+     * Fraction of requests answered with 502 Bad Gateway
+     */
+    public MockGitHubServer setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Fraction of requests answered with a secondary rate limit (403 with Retry-After)
+     */
+    public MockGitHubServer setSecondaryRateLimitRate(double secondaryRateLimitRate) {
+        this.secondaryRateLimitRate = secondaryRateLimitRate;
+        return this;
+    }
+
+    /**
+     * GraphQL queries asking for more repositories than this fail with a
+     * 502, the way GitHub answers queries that run into its timeout
+     */
+    public MockGitHubServer setMaxGraphQLRepositories(int maxGraphQLRepositories) {
+        this.maxGraphQLRepositories = maxGraphQLRepositories;
+        return this;
+    }
+
+    /**
+     * Whether the org-wide alert endpoints exist; without them they answer
+     * 404, as for an app lacking organization permissions
+     */
+    public MockGitHubServer setOrganizationAlerts(boolean organizationAlerts) {
+        this.organizationAlerts = organizationAlerts;
+        return this;
+    }
+
+    public MockGitHubServer start() throws IOException {
+        return start(0);
+    }
+
+    public MockGitHubServer start(int port) throws IOException {
+        SERVER_LOG.setLevel(Level.WARNING);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return handle(request);
+            }
+        });
+        server.start(port);
+        return this;
+    }
+
+    /**
+     * API root to hand to the clients, without a trailing slash
+     */
+    public String url() {
+        String url = server.url("/").toString();
+        return url.substring(0, url.length() - 1);
+    }
+
+    public int getRepositoryCount() {
+        return installations * repositoriesPerInstallation;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getAlertsServed() {
+        return alertsServed.get();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    public String stats() {
+        return "requests=" + requests.get() + " alerts=" + alertsServed.get() +
+            " injectedErrors=" + injectedErrors.get() + " rateLimited=" + rateLimited.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    private MockResponse handle(RecordedRequest request) {
+        requests.incrementAndGet();
+        HttpUrl url = request.getRequestUrl();
+        List<String> path = url.pathSegments();
+        String credential = credential(request.getHeader("Authorization"));
+
+        if (credential == null) {
+            return error(401, "Requires authentication");
+        }
+
+        // Rate limit headers go on every response, failures included
+        RateWindow window = rateWindows.computeIfAbsent(credential, c -> new RateWindow());
+        MockResponse response;
+        if (!window.tryAcquire()) {
+            rateLimited.incrementAndGet();
+            response = error(403, "API rate limit exceeded for installation.");
+        } else if (chance(secondaryRateLimitRate)) {
+            rateLimited.incrementAndGet();
+            injectedErrors.incrementAndGet();
+            response = error(403, "You have exceeded a secondary rate limit.").addHeader("Retry-After", "1");
+        } else if (chance(errorRate)) {
+            injectedErrors.incrementAndGet();
+            response = error(502, "Server Error");
+        } else {
+            response = route(request.getMethod(), path, url, credential, request.getBody().readUtf8());
+        }
+
+        window.addHeaders(response);
+        long delay = latencyMillis + (latencyJitterMillis > 0 ? nextLong(latencyJitterMillis + 1) : 0);
+        return delay > 0 ? response.setHeadersDelay(delay, TimeUnit.MILLISECONDS) : response;
+    }
+
+    private MockResponse route(String method, List<String> path, HttpUrl url, String credential, String body) {
+        int segments = path.size();
+
+        if ("POST".equals(method) && segments == 1 && "graphql".equals(path.get(0))) {
+            return graphql(body);
+        }
+
+        if ("GET".equals(method) && segments == 1 && "app".equals(path.get(0))) {
+            ObjectNode app = mapper.createObjectNode();
+            app.put("id", 1).put("slug", "mock-ghas-app").put("name", "Mock GHAS App");
+            return json(app);
+        }
+
+        if ("GET".equals(method) && segments == 2 && "app".equals(path.get(0)) && "installations".equals(path.get(1))) {
+            return page(url, installations, this::installation);
+        }
+
+        if ("POST".equals(method) && segments == 4 && "app".equals(path.get(0)) && "access_tokens".equals(path.get(3))) {
+            int installation = installationIndex(path.get(2));
+            if (installation < 0) {
+                return error(404, "Not Found");
+            }
+            ObjectNode token = mapper.createObjectNode();
+            token.put("token", TOKEN_PREFIX + path.get(2) + "_" + tokenSequence.incrementAndGet());
+            token.put("expires_at", Instant.now().plus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS).toString());
+            return json(token).setResponseCode(201);
+        }
+
+        if ("GET".equals(method) && segments == 2 && "installation".equals(path.get(0)) && "repositories".equals(path.get(1))) {
+            int installation = tokenInstallation(credential);
+            if (installation < 0) {
+                return error(403, "Resource not accessible by integration");
+            }
+            return repositoryPage(url, installation);
+        }
+
+        if ("GET".equals(method) && segments >= 3 && "repos".equals(path.get(0))) {
+            int installation = ownerIndex(path.get(1));
+            int repository = repositoryIndex(path.get(2));
+            if (installation < 0 || repository < 0) {
+                return error(404, "Not Found");
+            }
+            if (segments == 3) {
+                return json(repository(installation, repository));
+            }
+            if (segments == 5 && "alerts".equals(path.get(4))) {
+                String category = path.get(3);
+                if ("dependabot".equals(category) || "code-scanning".equals(category) || "secret-scanning".equals(category)) {
+                    return alertPage(url, category);
+                }
+            }
+        }
+
+        if ("GET".equals(method) && segments == 4 && "orgs".equals(path.get(0)) && "alerts".equals(path.get(3))) {
+            int installation = ownerIndex(path.get(1));
+            String category = path.get(2);
+            if (organizationAlerts && installation >= 0 && ("dependabot".equals(category) ||
+                    "code-scanning".equals(category) || "secret-scanning".equals(category))) {
+                return organizationAlertPage(url, installation, category);
+            }
+        }
+
+        return error(404, "Not Found");
+    }
+
+    private interface Element {
+        ObjectNode render(int index);
+    }
+
+    /**
+     * One page of a list endpoint with page/per_page and a Link header to the next page
+     */
+    private MockResponse page(HttpUrl url, int total, Element element) {
+        int perPage = perPage(url);
+        int page = Math.max(1, intParameter(url, "page", 1));
+        int from = Math.min(total, (page - 1) * perPage);
+        int to = Math.min(total, from + perPage);
+
+        ArrayNode items = mapper.createArrayNode();
+        for (int i = from; i < to; i++) {
+            items.add(element.render(i));
+        }
+        return withNextLink(json(items), url, page, to < total);
+    }
+
+    private MockResponse repositoryPage(HttpUrl url, int installation) {
+        int perPage = perPage(url);
+        int page = Math.max(1, intParameter(url, "page", 1));
+        int from = Math.min(repositoriesPerInstallation, (page - 1) * perPage);
+        int to = Math.min(repositoriesPerInstallation, from + perPage);
+
+        ObjectNode body = mapper.createObjectNode();
+        body.put("total_count", repositoriesPerInstallation);
+        ArrayNode repositories = body.putArray("repositories");
+        for (int i = from; i < to; i++) {
+            repositories.add(repository(installation, i));
+        }
+        return withNextLink(json(body), url, page, to < repositoriesPerInstallation);
+    }
+
+    /**
+     * Alert pages do not depend on the repository, so each distinct page is rendered once
+     */
+    private MockResponse alertPage(HttpUrl url, String category) {
+        int perPage = perPage(url);
+        int page = Math.max(1, intParameter(url, "page", 1));
+        int from = Math.min(alertsPerCategory, (page - 1) * perPage);
+        int to = Math.min(alertsPerCategory, from + perPage);
+
+        byte[] body = renderedPages.computeIfAbsent(category + ":" + from + ":" + to,
+            key -> renderAlerts(category, from + 1, to));
+
+        alertsServed.addAndGet(to - from);
+        return withNextLink(json(body), url, page, to < alertsPerCategory);
+    }
+
+    /**
+     * Body of an alert list page holding alerts first to last (alert
+     * numbers, inclusive) of a category: dependabot, code-scanning or
+     * secret-scanning
+     */
+    private byte[] renderAlerts(String category, int first, int last) {
+        ArrayNode alerts = mapper.createArrayNode();
+        for (int number = first; number <= last; number++) {
+            alerts.add(alert(category, number));
+        }
+        return bytes(alerts);
+    }
+
+    /**
+     * Alerts of all repositories of an organization, repository by
+     * repository, each with the repository it belongs to
+     */
+    private MockResponse organizationAlertPage(HttpUrl url, int installation, String category) {
+        int total = repositoriesPerInstallation * alertsPerCategory;
+        int perPage = perPage(url);
+        int page = Math.max(1, intParameter(url, "page", 1));
+        int from = Math.min(total, (page - 1) * perPage);
+        int to = Math.min(total, from + perPage);
+
+        ArrayNode alerts = mapper.createArrayNode();
+        for (int i = from; i < to; i++) {
+            ObjectNode alert = alert(category, i % alertsPerCategory + 1);
+            alert.set("repository", repository(installation, i / alertsPerCategory));
+            alerts.add(alert);
+        }
+        alertsServed.addAndGet(to - from);
+        return withNextLink(json(alerts), url, page, to < total);
+    }
+
+    private MockResponse withNextLink(MockResponse response, HttpUrl url, int page, boolean hasNext) {
+        if (hasNext) {
+            HttpUrl next = url.newBuilder().setQueryParameter("page", Integer.toString(page + 1)).build();
+            response.addHeader("Link", "<" + next + ">; rel=\"next\"");
+        }
+        return response;
+    }
+
+    /**
+     * Answers every rN: repository(owner: $oN, name: $nN) alias of a query
+     * with the fields RepositoryInventory asks for, whatever the selection.
+     * Unknown repositories come back null with a NOT_FOUND error, and the
+     * cost follows GitHub's formula: one request per connection per
+     * repository, divided by 100.
+     */
+    private MockResponse graphql(String body) {
+        JsonNode variables;
+        try {
+            variables = mapper.readTree(body).path("variables");
+        } catch (IOException e) {
+            return error(400, "Problems parsing JSON");
+        }
+
+        int count = 0;
+        while (variables.has("o" + count)) {
+            count++;
+        }
+        if (count > maxGraphQLRepositories) {
+            injectedErrors.incrementAndGet();
+            return error(502, "Server Error");
+        }
+
+        ObjectNode response = mapper.createObjectNode();
+        ObjectNode data = response.putObject("data");
+        ArrayNode errors = mapper.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            String owner = variables.path("o" + i).asText();
+            String name = variables.path("n" + i).asText();
+            int installation = ownerIndex(owner);
+            int repository = repositoryIndex(name);
+            if (installation < 0 || repository < 0) {
+                data.putNull("r" + i);
+                ObjectNode error = errors.addObject();
+                error.put("type", "NOT_FOUND");
+                error.putArray("path").add("r" + i);
+                error.put("message", "Could not resolve to a Repository with the name '" + owner + "/" + name + "'.");
+                continue;
+            }
+            data.set("r" + i, graphqlRepository(installation, repository));
+        }
+        data.putObject("rateLimit")
+            .put("cost", Math.max(1, (int) Math.ceil(2.0 * count / 100)))
+            .put("remaining", rateLimit)
+            .put("resetAt", NEWEST_UPDATE.toString());
+        if (errors.size() > 0) {
+            response.set("errors", errors);
+        }
+        return json(response);
+    }
+
+    private ObjectNode graphqlRepository(int installation, int index) {
+        ObjectNode repository = mapper.createObjectNode();
+        String owner = owner(installation);
+        String name = "repo-" + index;
+        repository.put("nameWithOwner", owner + "/" + name);
+        repository.put("name", name);
+        repository.putObject("owner").put("login", owner);
+        repository.put("description", "Synthetic repository served by MockGitHubServer.");
+        repository.put("url", "https://github.com/" + owner + "/" + name);
+        repository.put("sshUrl", "git@github.com:" + owner + "/" + name + ".git");
+        repository.put("isPrivate", index % 4 != 0);
+        repository.put("isArchived", false);
+        repository.put("isFork", false);
+        repository.put("diskUsage", 1024 + index);
+        repository.put("stargazerCount", index % 10);
+        repository.put("forkCount", index % 3);
+        repository.put("createdAt", NEWEST_UPDATE.minus(365, ChronoUnit.DAYS).toString());
+        repository.put("updatedAt", NEWEST_UPDATE.toString());
+        repository.put("pushedAt", NEWEST_UPDATE.toString());
+        repository.putObject("primaryLanguage").put("name", "Java");
+        repository.putObject("defaultBranchRef").put("name", "main");
+        ObjectNode collaborators = repository.putObject("collaborators");
+        collaborators.put("totalCount", 2);
+        ArrayNode nodes = collaborators.putArray("nodes");
+        nodes.addObject().put("login", "mock-admin");
+        nodes.addObject().put("login", "mock-developer-" + index % 5);
+        long open = 0;
+        for (int number = 1; number <= alertsPerCategory; number++) {
+            if (number % 7 != 0) {
+                open++;
+            }
+        }
+        repository.putObject("vulnerabilityAlerts").put("totalCount", open);
+        return repository;
+    }
+
+    private ObjectNode installation(int index) {
+        ObjectNode installation = mapper.createObjectNode();
+        installation.put("id", INSTALLATION_ID_BASE + index);
+        installation.put("app_id", 1);
+        installation.putObject("account").put("login", owner(index)).put("type", "Organization");
+        installation.put("target_type", "Organization");
+        installation.put("repository_selection", "all");
+        return installation;
+    }
+
+    private ObjectNode repository(int installation, int index) {
+        ObjectNode repository = mapper.createObjectNode();
+        String owner = owner(installation);
+        String name = "repo-" + index;
+        repository.put("id", installation * 100_000L + index);
+        repository.put("name", name);
+        repository.put("full_name", owner + "/" + name);
+        repository.putObject("owner").put("login", owner).put("type", "Organization");
+        repository.put("private", index % 4 != 0);
+        repository.put("language", "Java");
+        repository.put("size", 1024 + index);
+        repository.put("default_branch", "main");
+        return repository;
+    }
+
+    /**
+     * Alert number n; lower numbers were updated more recently, so pages come sorted by updated_at desc
+     */
+    private ObjectNode alert(String category, int number) {
+        ObjectNode alert = mapper.createObjectNode();
+        Instant updated = NEWEST_UPDATE.minus(number, ChronoUnit.MINUTES);
+        alert.put("number", number);
+        alert.put("state", number % 7 == 0 ? ("secret-scanning".equals(category) ? "resolved" : "dismissed") : "open");
+        alert.put("created_at", updated.minus(30, ChronoUnit.DAYS).toString());
+        alert.put("updated_at", updated.toString());
+
+        String severity = SEVERITIES[number % SEVERITIES.length];
+        if ("dependabot".equals(category)) {
+            String pkg = PACKAGES[number % PACKAGES.length];
+            ObjectNode dependency = alert.putObject("dependency");
+            dependency.putObject("package").put("ecosystem", "maven").put("name", pkg);
+            dependency.put("manifest_path", "pom.xml").put("scope", "runtime");
+
+            ObjectNode advisory = alert.putObject("security_advisory");
+            String ghsa = "GHSA-" + Integer.toString(1000 + number % 37, 36) + "-mock-adv1";
+            advisory.put("ghsa_id", ghsa);
+            advisory.put("cve_id", "CVE-2021-" + (44228 + number % 37));
+            advisory.put("summary", "Vulnerability in " + pkg);
+            advisory.put("description", "Synthetic advisory served by MockGitHubServer.");
+            advisory.put("severity", severity);
+            advisory.putObject("cvss").put("score", 10.0 - 2.5 * (number % SEVERITIES.length))
+                .put("vector_string", "CVSS:3.1/AV:N/AC:L/PR:N/UI:N/S:U/C:H/I:H/A:H");
+
+            ObjectNode vulnerability = alert.putObject("security_vulnerability");
+            vulnerability.putObject("package").put("ecosystem", "maven").put("name", pkg);
+            vulnerability.put("severity", severity).put("vulnerable_version_range", "< 2.15.0");
+            vulnerability.putObject("first_patched_version").put("identifier", "2.15.0");
+        } else if ("code-scanning".equals(category)) {
+            String rule = RULES[number % RULES.length];
+            alert.putObject("rule").put("id", rule).put("name", rule)
+                .put("severity", "error").put("security_severity_level", severity)
+                .put("description", "Synthetic rule " + rule);
+            alert.putObject("tool").put("name", "CodeQL").put("version", "2.15.3");
+            ObjectNode instance = alert.putObject("most_recent_instance");
+            instance.put("ref", "refs/heads/main").put("state", "open");
+            instance.putObject("location").put("path", "src/main/java/com/example/File" + number % 50 + ".java")
+                .put("start_line", number % 200 + 1).put("end_line", number % 200 + 1);
+        } else {
+            String type = SECRET_TYPES[number % SECRET_TYPES.length];
+            alert.put("secret_type", type);
+            alert.put("secret_type_display_name", type.replace('_', ' '));
+            alert.put("secret", "mock-secret-" + number);
+            alert.putNull("resolution");
+        }
+        return alert;
+    }
+
+    private static String owner(int installation) {
+        return "mock-org-" + installation;
+    }
+
+    private int ownerIndex(String owner) {
+        return index(owner, "mock-org-", installations);
+    }
+
+    private int repositoryIndex(String repository) {
+        return index(repository, "repo-", repositoriesPerInstallation);
+    }
+
+    private int installationIndex(String id) {
+        try {
+            long index = Long.parseLong(id) - INSTALLATION_ID_BASE;
+            return index >= 0 && index < installations ? (int) index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Installation a minted token belongs to ("ghs_mock_{installationId}_{sequence}"), or -1
+     */
+    private int tokenInstallation(String token) {
+        if (!token.startsWith(TOKEN_PREFIX)) {
+            return -1;
+        }
+        int end = token.indexOf('_', TOKEN_PREFIX.length());
+        return end < 0 ? -1 : installationIndex(token.substring(TOKEN_PREFIX.length(), end));
+    }
+
+    private static int index(String value, String prefix, int count) {
+        if (!value.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            int index = Integer.parseInt(value.substring(prefix.length()));
+            return index >= 0 && index < count ? index : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private int perPage(HttpUrl url) {
+        return Math.max(1, Math.min(maxPageSize, intParameter(url, "per_page", DEFAULT_PAGE_SIZE)));
+    }
+
+    private static int intParameter(HttpUrl url, String name, int defaultValue) {
+        String value = url.queryParameter(name);
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static String credential(String authorization) {
+        if (authorization == null) {
+            return null;
+        }
+        int space = authorization.indexOf(' ');
+        return space >= 0 ? authorization.substring(space + 1).trim() : authorization.trim();
+    }
+
+    private boolean chance(double probability) {
+        if (probability <= 0) {
+            return false;
+        }
+        synchronized (random) {
+            return random.nextDouble() < probability;
+        }
+    }
+
+    private long nextLong(long bound) {
+        synchronized (random) {
+            return (long) (random.nextDouble() * bound);
+        }
+    }
+
+    private MockResponse error(int code, String message) {
+        ObjectNode body = mapper.createObjectNode();
+        body.put("message", message);
+        body.put("documentation_url", "https://docs.github.com/rest");
+        return json(body).setResponseCode(code);
+    }
+
+    private MockResponse json(Object body) {
+        return json(bytes(body));
+    }
+
+    private static MockResponse json(byte[] body) {
+        return new MockResponse()
+            .addHeader("Content-Type", "application/json; charset=utf-8")
+            .setBody(new okio.Buffer().write(body));
+    }
+
+    private byte[] bytes(Object body) {
+        try {
+            return mapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot render mock response", e);
+        }
+    }
+
+    /**
+     * Fixed window request counter for one credential
+     */
+    private class RateWindow {
+        private long resetAt = System.currentTimeMillis() + rateLimitWindowMillis;
+        private int used;
+        private int remaining;
+
+        synchronized boolean tryAcquire() {
+            long now = System.currentTimeMillis();
+            if (now >= resetAt) {
+                resetAt = now + rateLimitWindowMillis;
+                used = 0;
+            }
+            boolean allowed = used < rateLimit;
+            if (allowed) {
+                used++;
+            }
+            remaining = rateLimit - used;
+            return allowed;
+        }
+
+        synchronized void addHeaders(MockResponse response) {
+            response.addHeader("X-RateLimit-Limit", rateLimit)
+                .addHeader("X-RateLimit-Remaining", remaining)
+                .addHeader("X-RateLimit-Used", used)
+                .addHeader("X-RateLimit-Reset", TimeUnit.MILLISECONDS.toSeconds(resetAt + 999))
+                .addHeader("X-RateLimit-Resource", "core");
+        }
+    }
+
+    /**
+     * Run the server on its own: java MockGitHubServer [port]
+     */
+    public static void main(String[] args) {
+        try {
+            MockGitHubServer server = new MockGitHubServer()
+                .start(args.length > 0 ? Integer.parseInt(args[0]) : 0);
+            System.out.println("Mock GitHub API listening on " + server.url());
+            System.out.println("Installations: " + server.installations + ", repositories: " + server.getRepositoryCount() +
+                ", alerts per category: " + server.alertsPerCategory);
+            System.out.println("Try: curl -H 'Authorization: Bearer x' " + server.url() + "/app/installations");
+            Thread.currentThread().join();
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+import okhttp3.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Paces outgoing GitHub API calls against the rate limit reported by GitHub.
+ *
+ * Every response carries X-RateLimit-Limit, X-RateLimit-Remaining and
+ * X-RateLimit-Reset. The scheduler keeps a token bucket per credential
+ * (rate limits are per token / installation) whose refill rate spreads the
+ * remaining budget evenly over the time left until the reset, so a long
+ * sweep slows down instead of running into 403s.
+ *
+ * Requests are either INTERACTIVE (a user waiting on a single repository)
+ * or BACKGROUND (org-wide sweeps). Background requests yield to waiting
+ * interactive ones and stop once the remaining budget drops to
+ * BACKGROUND_RESERVE of the limit, which is kept for interactive use.
+ * Tag a request with its priority via Request.Builder.tag(Priority.class, ...);
+ * untagged requests are interactive.
+ *
+ * Requests sent with execute() wait for budget in the interceptor, on the
+ * calling thread. Requests sent with enqueue() must be passed through
+ * pace() first: waiting inside the interceptor would happen on an OkHttp
+ * dispatcher thread and keep one of the dispatcher's per-host slots
+ * occupied, so a throttled background sweep could starve interactive
+ * asynchronous calls to the same host.
+ */
+public class RateLimitScheduler implements Interceptor {
+
+    public enum Priority { INTERACTIVE, BACKGROUND }
+
+    /** Share of the hourly limit background requests leave untouched */
+    public static final double BACKGROUND_RESERVE = 0.1;
+
+    /** Requests that may be sent back to back before pacing kicks in */
+    private static final int BURST = 10;
+
+    private static RateLimitScheduler defaultScheduler;
+
+    /** Marks a request whose budget was already taken by pace() */
+    private enum Paced { PACED }
+
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Process-wide scheduler used by GitHubHttpTransport
+     */
+    public static synchronized RateLimitScheduler getDefault() {
+        if (defaultScheduler == null) {
+            defaultScheduler = new RateLimitScheduler();
+        }
+        return defaultScheduler;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Bucket bucket = bucket(request);
+
+        if (request.tag(Paced.class) == null) {
+            try {
+                bucket.acquire(priority(request), 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for rate limit budget");
+            }
+        }
+
+        Response response = chain.proceed(request);
+        bucket.update(response);
+        return response;
+    }
+
+    /**
+     * Wait on the calling thread until the request may be sent, and return
+     * it marked so that the interceptor does not wait for it again. Use
+     * before Call.enqueue().
+     */
+    public Request pace(Request request) throws InterruptedException {
+        bucket(request).acquire(priority(request), 1);
+        return request.newBuilder().tag(Paced.class, Paced.PACED).build();
+    }
+
+    /**
+     * Reserve budget for calls made outside the shared transport (GHASClient
+     * uses its own HTTP client). The bucket still learns the budget from
+     * responses to calls made with the same token through the transport.
+     */
+    public void acquire(String token, Priority priority, int requests) throws InterruptedException {
+        bucket(token).acquire(priority, requests);
+    }
+
+    /**
+     * Remaining budget last reported for a token, or -1 if unknown
+     */
+    public int getRemaining(String token) {
+        Bucket bucket = buckets.get(token);
+        return bucket != null ? bucket.remaining() : -1;
+    }
+
+    private Bucket bucket(Request request) {
+        return bucket(credential(request.header("Authorization")) + resource(request.url()));
+    }
+
+    private static Priority priority(Request request) {
+        Priority priority = request.tag(Priority.class);
+        return priority != null ? priority : Priority.INTERACTIVE;
+    }
+
+    private Bucket bucket(String credential) {
+        Bucket bucket = buckets.get(credential);
+        if (bucket == null) {
+            // Installation tokens rotate hourly; drop buckets whose window is over
+            long now = System.currentTimeMillis();
+            buckets.values().removeIf(existing -> existing.isExpired(now));
+            bucket = buckets.computeIfAbsent(credential, key -> new Bucket());
+        }
+        return bucket;
+    }
+
+    /**
+     * GraphQL has its own points budget next to the REST one, so it gets its
+     * own bucket per credential
+     */
+    private static String resource(HttpUrl url) {
+        return url.encodedPath().endsWith("/graphql") ? "#graphql" : "";
+    }
+
+    private static String credential(String authorization) {
+        if (authorization == null) {
+            return "";
+        }
+        int space = authorization.indexOf(' ');
+        return space >= 0 ? authorization.substring(space + 1) : authorization;
+    }
+
+    /**
+     * Budget of one credential for the current rate limit window
+     */
+    private static class Bucket {
+        /** False until the first response, and again once the window has reset */
+        private boolean known;
+        private int limit;
+        private int remaining;
+        private long resetAtMillis;
+        private long pausedUntil;
+
+        private double tokens;
+        private double refillPerMilli;
+        private long lastRefill;
+
+        private int interactiveWaiting;
+
+        synchronized void acquire(Priority priority, int requests) throws InterruptedException {
+            boolean interactive = priority == Priority.INTERACTIVE;
+            if (interactive) {
+                interactiveWaiting++;
+            }
+            try {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    refill(now);
+
+                    long waitMillis;
+                    if (now < pausedUntil) {
+                        waitMillis = pausedUntil - now;
+                    } else if (!known) {
+                        return;
+                    } else if (!interactive && (interactiveWaiting > 0 || remaining - requests < limit * BACKGROUND_RESERVE)) {
+                        // Yield to interactive callers, or sit out the window once only the reserve is left
+                        waitMillis = interactiveWaiting > 0 ? 100 : resetAtMillis - now;
+                    } else if (tokens >= Math.min(requests, BURST)) {
+                        tokens -= requests;
+                        remaining = Math.max(0, remaining - requests);
+                        return;
+                    } else {
+                        waitMillis = refillPerMilli > 0
+                            ? (long) Math.ceil((Math.min(requests, BURST) - tokens) / refillPerMilli)
+                            : resetAtMillis - now;
+                    }
+                    if (known) {
+                        // Wake up at the reset at the latest to pick up the new window
+                        waitMillis = Math.min(waitMillis, resetAtMillis - now);
+                    }
+                    wait(Math.max(1, waitMillis));
+                }
+            } finally {
+                if (interactive) {
+                    interactiveWaiting--;
+                    notifyAll();
+                }
+            }
+        }
+
+        synchronized void update(Response response) {
+            String remainingHeader = response.header("X-RateLimit-Remaining");
+            String resetHeader = response.header("X-RateLimit-Reset");
+            long now = System.currentTimeMillis();
+
+            if (remainingHeader != null && resetHeader != null) {
+                try {
+                    int reportedRemaining = Integer.parseInt(remainingHeader);
+                    long reportedReset = Long.parseLong(resetHeader) * 1000;
+                    String limitHeader = response.header("X-RateLimit-Limit");
+
+                    if (!known || reportedReset != resetAtMillis) {
+                        tokens = Math.min(BURST, reportedRemaining);
+                        lastRefill = now;
+                    }
+                    known = true;
+                    limit = limitHeader != null ? Integer.parseInt(limitHeader) : Math.max(limit, reportedRemaining);
+                    remaining = reportedRemaining;
+                    resetAtMillis = reportedReset;
+                    refillPerMilli = (double) reportedRemaining / Math.max(1000, resetAtMillis - now);
+                    tokens = Math.min(tokens, reportedRemaining);
+                    if (reportedRemaining == 0) {
+                        pausedUntil = resetAtMillis;
+                    }
+                } catch (NumberFormatException ignored) {
+                    // Malformed headers leave the previous budget in place
+                }
+            }
+
+            if (response.code() == 403 || response.code() == 429) {
+                String retryAfter = response.header("Retry-After");
+                if (retryAfter != null) {
+                    try {
+                        pausedUntil = Math.max(pausedUntil, now + Long.parseLong(retryAfter.trim()) * 1000);
+                    } catch (NumberFormatException ignored) {
+                        // GitHub sends seconds; an HTTP date falls back to the reset time below
+                    }
+                }
+                if (known && remaining == 0) {
+                    pausedUntil = Math.max(pausedUntil, resetAtMillis);
+                }
+            }
+            notifyAll();
+        }
+
+        synchronized int remaining() {
+            return known ? remaining : -1;
+        }
+
+        synchronized boolean isExpired(long now) {
+            return known && now >= resetAtMillis && interactiveWaiting == 0;
+        }
+
+        private void refill(long now) {
+            if (known && now >= resetAtMillis) {
+                // New window, budget unknown until the next response reports it
+                known = false;
+                return;
+            }
+            tokens = Math.min(BURST, tokens + (now - lastRefill) * refillPerMilli);
+            lastRefill = now;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+import com.github.security.ghas.GHASClient;
+import com.github.security.ghas.model.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Security alerts collected for a single repository.
+ *
+ * Callers that already fetched the alert lists set them directly, so the
+ * summary (totals and JSON) is computed from data in hand instead of
+ * fetching every category again through GHASClient.getAllSecurityAlerts().
+ *
+ * Each alert category is fetched on its own, concurrently with the others,
+ * so a failure in one category (for example code scanning not being enabled)
+ * is recorded as an error for that category and does not hide the results of
+ * the others.
+ *
+ * Sources that read the alerts as API JSON (GHASAlertStreams, AlertDeltaSync)
+ * keep that JSON next to the models, since the models drop fields such as
+ * the CVSS score and created_at. GHASClient only returns the models.
+ */
+public class RepositoryAlerts {
+
+    /** Runs category fetches for callers that do not bring their own executor */
+    private static final ExecutorService CATEGORY_FETCHER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "alert-category-fetcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final GHASMetrics METRICS = GHASMetrics.getDefault();
+
+    private final String owner;
+    private final String repo;
+
+    private List<DependabotAlert> dependabotAlerts = Collections.emptyList();
+    private List<SecretScanningAlert> secretScanningAlerts = Collections.emptyList();
+    private List<CodeScanningAlert> codeScanningAlerts = Collections.emptyList();
+
+    private String dependabotError;
+    private String secretScanningError;
+    private String codeScanningError;
+
+    /** API JSON per category, set by the categories that were read as JSON */
+    private final Map<AlertStore.Category, List<JsonNode>> alertJson = new ConcurrentHashMap<>();
+
+    public RepositoryAlerts(String owner, String repo) {
+        this.owner = owner;
+        this.repo = repo;
+    }
+
+    /**
+     * Fetch all three alert categories for a repository concurrently
+     */
+    public static RepositoryAlerts fetch(GHASClient client, GHASAlertStreams streams, String owner, String repo) {
+        return fetchAsync(client, streams, owner, repo, CATEGORY_FETCHER).join();
+    }
+
+    /**
+     * Start the three category fetches on the given executor. The returned
+     * future completes once all of them have finished (successfully or not),
+     * so per-repository latency is that of the slowest category. It never
+     * completes exceptionally; failures are recorded per category.
+     *
+     * Dependabot alerts are read once, as API JSON through the streams, and
+     * bound to the models from that JSON; secret and code scanning come
+     * from the client.
+     */
+    public static CompletableFuture<RepositoryAlerts> fetchAsync(GHASClient client, GHASAlertStreams streams,
+                                                                 String owner, String repo, Executor executor) {
+        RepositoryAlerts alerts = new RepositoryAlerts(owner, repo);
+
+        CompletableFuture<Void> dependabot = CompletableFuture.runAsync(() -> {
+            try {
+                List<JsonNode> json = METRICS.timeClientCall("dependabot_alerts", () -> {
+                    try (Stream<JsonNode> stream = streams.streamDependabotAlertsJson(owner, repo)) {
+                        return stream.collect(Collectors.toList());
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                });
+                List<DependabotAlert> dependabotAlerts = new ArrayList<>(json.size());
+                for (JsonNode alert : json) {
+                    dependabotAlerts.add(streams.bind(alert, DependabotAlert.class));
+                }
+                alerts.setDependabotAlerts(dependabotAlerts);
+                alerts.setAlertJson(AlertStore.Category.DEPENDABOT, json);
+            } catch (Exception e) {
+                alerts.setDependabotError(e.getMessage());
+            }
+        }, executor);
+
+        CompletableFuture<Void> secretScanning = CompletableFuture.runAsync(() -> {
+            try {
+                alerts.setSecretScanningAlerts(METRICS.timeClientCall("secret_scanning_alerts",
+                    () -> client.getSecretScanningAlerts(owner, repo)));
+            } catch (Exception e) {
+                alerts.setSecretScanningError(e.getMessage());
+            }
+        }, executor);
+
+        CompletableFuture<Void> codeScanning = CompletableFuture.runAsync(() -> {
+            try {
+                alerts.setCodeScanningAlerts(METRICS.timeClientCall("code_scanning_alerts",
+                    () -> client.getCodeScanningAlerts(owner, repo)));
+            } catch (Exception e) {
+                alerts.setCodeScanningError(e.getMessage());
+            }
+        }, executor);
+
+        return CompletableFuture.allOf(dependabot, secretScanning, codeScanning).thenApply(done -> alerts);
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getRepo() {
+        return repo;
+    }
+
+    public String getFullName() {
+        return owner + "/" + repo;
+    }
+
+    public List<DependabotAlert> getDependabotAlerts() {
+        return dependabotAlerts;
+    }
+
+    public void setDependabotAlerts(List<DependabotAlert> dependabotAlerts) {
+        this.dependabotAlerts = dependabotAlerts != null ? dependabotAlerts : Collections.emptyList();
+    }
+
+    public List<SecretScanningAlert> getSecretScanningAlerts() {
+        return secretScanningAlerts;
+    }
+
+    public void setSecretScanningAlerts(List<SecretScanningAlert> secretScanningAlerts) {
+        this.secretScanningAlerts = secretScanningAlerts != null ? secretScanningAlerts : Collections.emptyList();
+    }
+
+    public List<CodeScanningAlert> getCodeScanningAlerts() {
+        return codeScanningAlerts;
+    }
+
+    public void setCodeScanningAlerts(List<CodeScanningAlert> codeScanningAlerts) {
+        this.codeScanningAlerts = codeScanningAlerts != null ? codeScanningAlerts : Collections.emptyList();
+    }
+
+    /**
+     * The alerts of a category as the API returned them, or null when the
+     * category only came as models from GHASClient
+     */
+    public List<JsonNode> getAlertJson(AlertStore.Category category) {
+        return alertJson.get(category);
+    }
+
+    public void setAlertJson(AlertStore.Category category, List<JsonNode> alerts) {
+        if (alerts != null) {
+            alertJson.put(category, alerts);
+        } else {
+            alertJson.remove(category);
+        }
+    }
+
+    public String getDependabotError() {
+        return dependabotError;
+    }
+
+    public void setDependabotError(String dependabotError) {
+        this.dependabotError = dependabotError;
+    }
+
+    public String getSecretScanningError() {
+        return secretScanningError;
+    }
+
+    public void setSecretScanningError(String secretScanningError) {
+        this.secretScanningError = secretScanningError;
+    }
+
+    public String getCodeScanningError() {
+        return codeScanningError;
+    }
+
+    public void setCodeScanningError(String codeScanningError) {
+        this.codeScanningError = codeScanningError;
+    }
+
+    public boolean hasErrors() {
+        return dependabotError != null || secretScanningError != null || codeScanningError != null;
+    }
+
+    public int getTotalAlerts() {
+        return dependabotAlerts.size() + secretScanningAlerts.size() + codeScanningAlerts.size();
+    }
+}
@@ -0,0 +1,332 @@
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.*;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk repository inventory over the GraphQL API.
+ *
+ * Building an inventory from GHASClient costs getRepository() and
+ * getRepositoryCollaborators() per repository, 2N sequential requests on
+ * top of the listing. Here one GraphQL query asks for a whole batch of
+ * repositories through aliases (r0: repository(...), r1: ...), each with
+ * its details, first page of collaborators and open Dependabot alert
+ * count, so thousands of repositories take dozens of queries.
+ *
+ * The batch size follows the query cost GitHub reports in rateLimit.cost:
+ * after every query the size is scaled so the next one costs about
+ * targetCost points, growing at most twofold per step, and shrunk further
+ * if the query took longer than TARGET_LATENCY_MILLIS (GitHub gives up on
+ * queries after ten seconds). A batch that times out or fails with a 5xx
+ * is halved and retried, and later batches stay below three quarters of
+ * the size that failed. Batches run one after another, as GitHub asks
+ * for GraphQL clients.
+ *
+ * Repositories that cannot be read (not found, no access to collaborators,
+ * ...) keep whatever fields were returned and carry the GraphQL error
+ * message instead of failing the batch. Code scanning and secret scanning
+ * alerts are not exposed over GraphQL, so only Dependabot alerts are
+ * counted.
+ */
+public class RepositoryInventory {
+
+    private static final String GITHUB_API_BASE = "https://api.github.com";
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    public static final int MIN_BATCH_SIZE = 1;
+    public static final int MAX_BATCH_SIZE = 100;
+    private static final int INITIAL_BATCH_SIZE = 25;
+    private static final int DEFAULT_TARGET_COST = 10;
+    private static final long TARGET_LATENCY_MILLIS = 5000;
+    private static final int COLLABORATOR_PAGE_SIZE = 100;
+
+    private static final String REPOSITORY_FIELDS =
+        "fragment RepositoryFields on Repository {\n" +
+        "  nameWithOwner name owner { login } description url sshUrl\n" +
+        "  isPrivate isArchived isFork diskUsage stargazerCount forkCount\n" +
+        "  createdAt updatedAt pushedAt\n" +
+        "  primaryLanguage { name }\n" +
+        "  defaultBranchRef { name }\n" +
+        "  collaborators(first: " + COLLABORATOR_PAGE_SIZE + ") { totalCount nodes { login } }\n" +
+        "  vulnerabilityAlerts(states: OPEN, first: 1) { totalCount }\n" +
+        "}\n";
+
+    private static final GHASMetrics.Counter COST_POINTS = GHASMetrics.getDefault().counter(
+        "ghas_graphql_cost_points_total", "GraphQL rate limit points spent by RepositoryInventory");
+
+    private final String token;
+    private final String apiBase;
+    private final int targetCost;
+    private final OkHttpClient httpClient;
+    private final ObjectMapper mapper;
+
+    private int batchSize = INITIAL_BATCH_SIZE;
+    /** Lowered below every batch size that failed, so the size does not grow back into it */
+    private int ceiling = MAX_BATCH_SIZE;
+    private long queries;
+    private long retries;
+    private long costPoints;
+
+    public RepositoryInventory(String token) throws IOException {
+        this(token, GITHUB_API_BASE, DEFAULT_TARGET_COST);
+    }
+
+    /**
+     * @param targetCost rate limit points a single query should cost
+     */
+    public RepositoryInventory(String token, String apiBase, int targetCost) throws IOException {
+        this.token = token;
+        this.apiBase = apiBase;
+        this.targetCost = Math.max(1, targetCost);
+        // GraphQL queries get up to ten seconds on GitHub's side, plus transfer time
+        this.httpClient = GitHubHttpTransport.shared().newBuilder()
+            .readTimeout(30, TimeUnit.SECONDS)
+            .build();
+        this.mapper = new ObjectMapper();
+        this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    /**
+     * One repository of the inventory
+     */
+    public static class Asset {
+        private final String fullName;
+        private String name;
+        private String owner;
+        private String description;
+        private String url;
+        private String sshUrl;
+        private boolean isPrivate;
+        private boolean archived;
+        private boolean fork;
+        private String language;
+        private String defaultBranch;
+        private long diskUsageKb;
+        private long stars;
+        private long forks;
+        private String createdAt;
+        private String updatedAt;
+        private String pushedAt;
+        private List<String> collaborators = Collections.emptyList();
+        private int collaboratorCount;
+        private int openDependabotAlerts;
+        private String error;
+
+        Asset(String fullName) {
+            this.fullName = fullName;
+        }
+
+        public String getFullName() { return fullName; }
+        public String getName() { return name; }
+        public String getOwner() { return owner; }
+        public String getDescription() { return description; }
+        public String getUrl() { return url; }
+        public String getSshUrl() { return sshUrl; }
+        public boolean isPrivate() { return isPrivate; }
+        public boolean isArchived() { return archived; }
+        public boolean isFork() { return fork; }
+        public String getLanguage() { return language; }
+        public String getDefaultBranch() { return defaultBranch; }
+        public long getDiskUsageKb() { return diskUsageKb; }
+        public long getStars() { return stars; }
+        public long getForks() { return forks; }
+        public String getCreatedAt() { return createdAt; }
+        public String getUpdatedAt() { return updatedAt; }
+        public String getPushedAt() { return pushedAt; }
+
+        /**
+         * Logins of the first COLLABORATOR_PAGE_SIZE collaborators
+         */
+        public List<String> getCollaborators() { return collaborators; }
+
+        /**
+         * All collaborators, including those beyond the first page
+         */
+        public int getCollaboratorCount() { return collaboratorCount; }
+
+        public int getOpenDependabotAlerts() { return openDependabotAlerts; }
+
+        /**
+         * GraphQL error messages for this repository, null if it was read in full
+         */
+        public String getError() { return error; }
+
+        void addError(String message) {
+            error = error == null ? message : error + "; " + message;
+        }
+    }
+
+    /**
+     * Inventory of the given repositories ("owner/name"), in the same order
+     */
+    public List<Asset> fetch(List<String> fullNames) throws IOException {
+        List<Asset> assets = new ArrayList<>(fullNames.size());
+        int next = 0;
+        while (next < fullNames.size()) {
+            List<String> batch = fullNames.subList(next, Math.min(fullNames.size(), next + batchSize));
+            List<Asset> results = fetchBatch(batch);
+            if (results == null) {
+                // Too heavy for GitHub: retry the same repositories in smaller batches
+                retries++;
+                GHASMetrics.getDefault().recordRetry("inventory_batch");
+                if (batch.size() == MIN_BATCH_SIZE) {
+                    throw new IOException("GraphQL query for " + batch.get(0) + " keeps failing");
+                }
+                ceiling = Math.max(MIN_BATCH_SIZE, batch.size() * 3 / 4);
+                batchSize = Math.max(MIN_BATCH_SIZE, batch.size() / 2);
+                continue;
+            }
+            assets.addAll(results);
+            next += batch.size();
+        }
+        return assets;
+    }
+
+    /**
+     * Run one batched query and retune the batch size from its cost. Returns
+     * null when GitHub timed out or failed with a server error.
+     */
+    private List<Asset> fetchBatch(List<String> fullNames) throws IOException {
+        StringBuilder declarations = new StringBuilder();
+        StringBuilder selections = new StringBuilder();
+        ObjectNode variables = mapper.createObjectNode();
+        for (int i = 0; i < fullNames.size(); i++) {
+            String fullName = fullNames.get(i);
+            int slash = fullName.indexOf('/');
+            if (slash <= 0 || slash == fullName.length() - 1) {
+                throw new IllegalArgumentException("Expected owner/name, got: " + fullName);
+            }
+            declarations.append(i == 0 ? "" : ", ").append("$o").append(i).append(": String!, $n").append(i).append(": String!");
+            selections.append("  r").append(i).append(": repository(owner: $o").append(i)
+                .append(", name: $n").append(i).append(") { ...RepositoryFields }\n");
+            variables.put("o" + i, fullName.substring(0, slash));
+            variables.put("n" + i, fullName.substring(slash + 1));
+        }
+        String query = "query(" + declarations + ") {\n" + selections +
+            "  rateLimit { cost remaining resetAt }\n}\n" + REPOSITORY_FIELDS;
+
+        ObjectNode body = mapper.createObjectNode();
+        body.put("query", query);
+        body.set("variables", variables);
+
+        Request request = new Request.Builder()
+            .url(apiBase + "/graphql")
+            .addHeader("Authorization", "Bearer " + token)
+            .addHeader("User-Agent", "GHAS-Client/1.0")
+            .post(RequestBody.create(JSON, mapper.writeValueAsBytes(body)))
+            .build();
+
+        long start = System.nanoTime();
+        JsonNode response;
+        try (Response httpResponse = httpClient.newCall(request).execute()) {
+            if (httpResponse.code() >= 500) {
+                return null;
+            }
+            if (!httpResponse.isSuccessful()) {
+                throw new IOException("GitHub GraphQL request failed: " + httpResponse.code() + " " +
+                    httpResponse.body().string());
+            }
+            response = mapper.readTree(httpResponse.body().byteStream());
+        } catch (SocketTimeoutException e) {
+            // GitHub is still working on a query that is too heavy
+            return null;
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        queries++;
+
+        JsonNode data = response.path("data");
+        if (data.isMissingNode() || data.isNull()) {
+            for (JsonNode error : response.path("errors")) {
+                if ("RESOURCE_LIMITS_EXCEEDED".equals(error.path("type").asText()) ||
+                        error.path("message").asText().toLowerCase().contains("timeout")) {
+                    return null;
+                }
+            }
+            throw new IOException("GitHub GraphQL query failed: " + response.path("errors"));
+        }
+
+        List<Asset> assets = new ArrayList<>(fullNames.size());
+        for (int i = 0; i < fullNames.size(); i++) {
+            assets.add(toAsset(fullNames.get(i), data.path("r" + i)));
+        }
+        // Errors point at the alias of the repository they belong to, e.g. ["r3", "collaborators"]
+        for (JsonNode error : response.path("errors")) {
+            String alias = error.path("path").path(0).asText();
+            if (alias.matches("r\\d+") && Integer.parseInt(alias.substring(1)) < assets.size()) {
+                assets.get(Integer.parseInt(alias.substring(1))).addError(error.path("message").asText());
+            }
+        }
+
+        int cost = data.path("rateLimit").path("cost").asInt(1);
+        costPoints += cost;
+        COST_POINTS.add(cost);
+        retune(fullNames.size(), cost, elapsedMillis);
+        return assets;
+    }
+
+    private Asset toAsset(String fullName, JsonNode repository) {
+        Asset asset = new Asset(fullName);
+        if (repository.isMissingNode() || repository.isNull()) {
+            // Not found or not accessible; the message comes with the errors
+            return asset;
+        }
+        asset.name = repository.path("name").asText(null);
+        asset.owner = repository.path("owner").path("login").asText(null);
+        asset.description = repository.path("description").asText(null);
+        asset.url = repository.path("url").asText(null);
+        asset.sshUrl = repository.path("sshUrl").asText(null);
+        asset.isPrivate = repository.path("isPrivate").asBoolean();
+        asset.archived = repository.path("isArchived").asBoolean();
+        asset.fork = repository.path("isFork").asBoolean();
+        asset.language = repository.path("primaryLanguage").path("name").asText(null);
+        asset.defaultBranch = repository.path("defaultBranchRef").path("name").asText(null);
+        asset.diskUsageKb = repository.path("diskUsage").asLong();
+        asset.stars = repository.path("stargazerCount").asLong();
+        asset.forks = repository.path("forkCount").asLong();
+        asset.createdAt = repository.path("createdAt").asText(null);
+        asset.updatedAt = repository.path("updatedAt").asText(null);
+        asset.pushedAt = repository.path("pushedAt").asText(null);
+
+        JsonNode collaborators = repository.path("collaborators");
+        if (!collaborators.isMissingNode() && !collaborators.isNull()) {
+            List<String> logins = new ArrayList<>();
+            for (JsonNode node : collaborators.path("nodes")) {
+                logins.add(node.path("login").asText());
+            }
+            asset.collaborators = logins;
+            asset.collaboratorCount = collaborators.path("totalCount").asInt(logins.size());
+        }
+        asset.openDependabotAlerts = repository.path("vulnerabilityAlerts").path("totalCount").asInt();
+        return asset;
+    }
+
+    /**
+     * Scale the batch so the next query costs about targetCost points and
+     * finishes well within GitHub's timeout
+     */
+    private void retune(int size, int cost, long elapsedMillis) {
+        double scale = (double) targetCost / Math.max(1, cost);
+        if (elapsedMillis > TARGET_LATENCY_MILLIS) {
+            scale = Math.min(scale, (double) TARGET_LATENCY_MILLIS / elapsedMillis);
+        }
+        int next = (int) Math.min(size * 2L, (long) Math.floor(size * scale));
+        batchSize = Math.max(MIN_BATCH_SIZE, Math.min(ceiling, next));
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public String stats() {
+        return "GraphQL inventory: " + queries + " queries, " + retries + " retried with smaller batches, " +
+            costPoints + " points, batch size " + batchSize;
+    }
+}
@@ -0,0 +1,395 @@
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Full file listing of a repository from the git trees API.
+ *
+ * Walking /contents costs one request per directory. The recursive trees
+ * endpoint returns every path of a commit in a single response, so a
+ * listing costs two requests: the root tree of the ref (which yields its
+ * SHA) and the recursive tree of that SHA.
+ *
+ * GitHub truncates recursive trees above 100,000 entries or 7 MB. A
+ * truncated tree is completed with a breadth-first walk that lists each
+ * directory with a non-recursive trees request. Directories are requested
+ * as soon as their parent has been listed, all in flight at once, so the
+ * walk is bounded by the transport's concurrency limit rather than by the
+ * depth of the repository. Subtrees are addressed by SHA, so the walk
+ * reads one consistent snapshot even if the branch moves meanwhile.
+ *
+ * A tree SHA names its content, so complete listings are cached by SHA
+ * for good: in memory for the process and in ~/.ghas/trees/{sha}.json
+ * across runs. Listing an unchanged branch again costs the root tree
+ * request only.
+ */
+public class RepositoryTree {
+
+    private static final String GITHUB_API_BASE = "https://api.github.com";
+    private static final int MEMORY_CACHE_TREES = 16;
+
+    private static final Map<String, Tree> MEMORY_CACHE = new LinkedHashMap<String, Tree>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Tree> eldest) {
+            return size() > MEMORY_CACHE_TREES;
+        }
+    };
+
+    private final String token;
+    private final String apiBase;
+    private final File cacheDirectory;
+    private final OkHttpClient httpClient;
+    private final ObjectMapper mapper;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong recursiveFetches = new AtomicLong();
+    private final AtomicLong walkedDirectories = new AtomicLong();
+
+    public RepositoryTree(String token) throws IOException {
+        this(token, GITHUB_API_BASE, defaultDirectory());
+    }
+
+    /**
+     * @param cacheDirectory where complete trees are kept across runs, or null for the in-memory cache only
+     */
+    public RepositoryTree(String token, String apiBase, File cacheDirectory) throws IOException {
+        this.token = token;
+        this.apiBase = apiBase;
+        this.cacheDirectory = cacheDirectory;
+        this.httpClient = GitHubHttpTransport.shared();
+        this.mapper = new ObjectMapper();
+        this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    public static File defaultDirectory() {
+        return new File(System.getProperty("user.home"), ".ghas" + File.separator + "trees");
+    }
+
+    /**
+     * One path of the tree. Type is "blob" for files (symlinks included),
+     * "tree" for directories and "commit" for submodules.
+     */
+    public static class Entry {
+        private final String path;
+        private final String mode;
+        private final String type;
+        private final String sha;
+        private final long size;
+
+        @JsonCreator
+        public Entry(@JsonProperty("path") String path,
+                     @JsonProperty("mode") String mode,
+                     @JsonProperty("type") String type,
+                     @JsonProperty("sha") String sha,
+                     @JsonProperty("size") long size) {
+            this.path = path;
+            this.mode = mode;
+            this.type = type;
+            this.sha = sha;
+            this.size = size;
+        }
+
+        public String getPath() { return path; }
+        public String getMode() { return mode; }
+        public String getType() { return type; }
+        public String getSha() { return sha; }
+        public long getSize() { return size; }
+
+        @JsonIgnore
+        public String getName() {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+
+        /**
+         * Path of the containing directory, "" for the root
+         */
+        @JsonIgnore
+        public String getDirectory() {
+            int slash = path.lastIndexOf('/');
+            return slash < 0 ? "" : path.substring(0, slash);
+        }
+
+        @JsonIgnore
+        public boolean isFile() {
+            return "blob".equals(type);
+        }
+
+        @JsonIgnore
+        public boolean isDirectory() {
+            return "tree".equals(type);
+        }
+
+        Entry under(String directory) {
+            return directory.isEmpty() ? this : new Entry(directory + "/" + path, mode, type, sha, size);
+        }
+    }
+
+    /**
+     * Every path of one root tree, sorted by path
+     */
+    public static class Tree {
+        private final String sha;
+        private final List<Entry> entries;
+
+        Tree(String sha, List<Entry> entries) {
+            this.sha = sha;
+            this.entries = Collections.unmodifiableList(entries);
+        }
+
+        public String getSha() {
+            return sha;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public List<Entry> getFiles() {
+            return entries.stream().filter(Entry::isFile).collect(Collectors.toList());
+        }
+
+        /**
+         * Direct children of a directory, "" for the root
+         */
+        public List<Entry> list(String directory) {
+            return entries.stream()
+                .filter(entry -> entry.getDirectory().equals(directory))
+                .collect(Collectors.toList());
+        }
+
+        /**
+         * Total size of the files in bytes
+         */
+        public long getTotalSize() {
+            return entries.stream().filter(Entry::isFile).mapToLong(Entry::getSize).sum();
+        }
+    }
+
+    /**
+     * List every path of a ref (branch, tag or commit SHA)
+     */
+    public Tree fetch(String owner, String repo, String ref) throws IOException {
+        String base = apiBase + "/repos/" + owner + "/" + repo + "/git/trees/";
+
+        // The root tree is small and tells which tree SHA the ref points at now
+        JsonNode root = get(base + ref);
+        String sha = root.path("sha").asText();
+
+        Tree tree = cached(sha);
+        if (tree != null) {
+            cacheHits.incrementAndGet();
+            return tree;
+        }
+
+        recursiveFetches.incrementAndGet();
+        JsonNode recursive = get(base + sha + "?recursive=1");
+        List<Entry> entries;
+        if (recursive.path("truncated").asBoolean(false)) {
+            entries = walk(base, root);
+        } else {
+            entries = entries(recursive, "");
+        }
+        entries.sort(Comparator.comparing(Entry::getPath));
+
+        tree = new Tree(sha, entries);
+        store(tree);
+        return tree;
+    }
+
+    /**
+     * Breadth-first walk over the subtrees, starting from the already
+     * fetched root. Every directory is requested as soon as its parent is
+     * listed; the transport limits how many run at once.
+     */
+    private List<Entry> walk(String base, JsonNode root) throws IOException {
+        ConcurrentLinkedQueue<Entry> entries = new ConcurrentLinkedQueue<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        visit(base, "", CompletableFuture.completedFuture(root), entries, pending, done);
+
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while walking the tree");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+        return new ArrayList<>(entries);
+    }
+
+    private void visit(String base, String directory, CompletableFuture<JsonNode> listing,
+                       ConcurrentLinkedQueue<Entry> entries, AtomicInteger pending, CompletableFuture<Void> done) {
+        listing.whenComplete((node, error) -> {
+            if (error != null) {
+                done.completeExceptionally(error);
+                return;
+            }
+            if (done.isDone()) {
+                return;
+            }
+            walkedDirectories.incrementAndGet();
+            for (Entry entry : entries(node, directory)) {
+                entries.add(entry);
+                if (entry.isDirectory()) {
+                    pending.incrementAndGet();
+                    visit(base, entry.getPath(), getAsync(base + entry.getSha()), entries, pending, done);
+                }
+            }
+            if (pending.decrementAndGet() == 0) {
+                done.complete(null);
+            }
+        });
+    }
+
+    private List<Entry> entries(JsonNode tree, String directory) {
+        List<Entry> entries = new ArrayList<>();
+        for (JsonNode item : tree.path("tree")) {
+            entries.add(mapper.convertValue(item, Entry.class).under(directory));
+        }
+        return entries;
+    }
+
+    private Request request(String url) {
+        return new Request.Builder()
+            .url(url)
+            .addHeader("Authorization", "Bearer " + token)
+            .addHeader("Accept", "application/vnd.github.v3+json")
+            .addHeader("User-Agent", "GHAS-Client/1.0")
+            .build();
+    }
+
+    private JsonNode get(String url) throws IOException {
+        try (Response response = httpClient.newCall(request(url)).execute()) {
+            return read(response, url);
+        }
+    }
+
+    /**
+     * Enqueue a GET once the concurrency limiter admits it; the walk runs in
+     * OkHttp callbacks, which must not wait for a slot
+     */
+    private CompletableFuture<JsonNode> getAsync(String url) {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.getDefault();
+        return limiter.admit(request(url)).thenCompose(admitted -> enqueue(admitted, url, limiter));
+    }
+
+    private CompletableFuture<JsonNode> enqueue(Request request, String url, AdaptiveConcurrencyLimiter limiter) {
+        CompletableFuture<JsonNode> future = new CompletableFuture<>();
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                limiter.abandon(call.request());
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response body = response) {
+                    future.complete(read(body, url));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    private JsonNode read(Response response, String url) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("GitHub API request failed: " + response.code() + " " + url);
+        }
+        return mapper.readTree(response.body().byteStream());
+    }
+
+    private Tree cached(String sha) {
+        synchronized (MEMORY_CACHE) {
+            Tree tree = MEMORY_CACHE.get(sha);
+            if (tree != null) {
+                return tree;
+            }
+        }
+        if (cacheDirectory == null) {
+            return null;
+        }
+        File file = cacheFile(sha);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            Tree tree = new Tree(sha, entries(mapper.readTree(file), ""));
+            synchronized (MEMORY_CACHE) {
+                MEMORY_CACHE.put(sha, tree);
+            }
+            return tree;
+        } catch (IOException e) {
+            // A damaged cache file is simply fetched again
+            System.err.println("Could not read cached tree " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(Tree tree) {
+        synchronized (MEMORY_CACHE) {
+            MEMORY_CACHE.put(tree.getSha(), tree);
+        }
+        if (cacheDirectory == null) {
+            return;
+        }
+        File file = cacheFile(tree.getSha());
+        File temp = null;
+        try {
+            Files.createDirectories(cacheDirectory.toPath());
+            ObjectNode node = mapper.createObjectNode();
+            node.put("sha", tree.getSha());
+            node.set("tree", mapper.valueToTree(tree.getEntries()));
+            // A temp file of its own: another process may be storing the same tree right now
+            temp = Files.createTempFile(cacheDirectory.toPath(), file.getName(), ".tmp").toFile();
+            mapper.writeValue(temp, node);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The cache is best effort, the next run fetches the tree again
+            System.err.println("Could not save tree " + file + ": " + e.getMessage());
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private File cacheFile(String sha) {
+        return new File(cacheDirectory, sha + ".json");
+    }
+
+    public String stats() {
+        return "Trees: " + recursiveFetches.get() + " fetched, " + cacheHits.get() + " from cache, " +
+            walkedDirectories.get() + " directories walked";
+    }
+}
@@ -0,0 +1,274 @@
+import com.github.security.ghas.model.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Single-pass alert statistics that merge across repositories.
+ *
+ * One add() call per alert updates every tally at once: Dependabot severity
+ * in an enum-indexed long[], and package, ecosystem, code scanning rule,
+ * rule severity and secret type in open-addressing String -> long maps.
+ * No counter is boxed, so tallying an alert allocates nothing once its keys
+ * are known. Aggregates built per repository (e.g. by parallel workers)
+ * combine with merge(), which costs one pass over the other aggregate's
+ * distinct keys rather than over its alerts.
+ *
+ * Not thread-safe; give each worker its own aggregator and merge the results.
+ */
+public class SecurityAggregator {
+
+    public enum Severity {
+        CRITICAL, HIGH, MEDIUM, LOW, UNKNOWN;
+
+        /**
+         * Map an advisory severity string; "moderate" is the GraphQL spelling of medium
+         */
+        public static Severity parse(String severity) {
+            if (severity == null) {
+                return UNKNOWN;
+            }
+            switch (severity.toLowerCase(Locale.ROOT)) {
+                case "critical": return CRITICAL;
+                case "high": return HIGH;
+                case "medium":
+                case "moderate": return MEDIUM;
+                case "low": return LOW;
+                default: return UNKNOWN;
+            }
+        }
+    }
+
+    private static final Severity[] SEVERITIES = Severity.values();
+
+    private final long[] dependabotBySeverity = new long[SEVERITIES.length];
+    private long dependabotTotal;
+    private long secretScanningTotal;
+    private long codeScanningTotal;
+
+    private final Counts packages = new Counts();
+    private final Counts ecosystems = new Counts();
+    private final Counts rules = new Counts();
+    private final Counts ruleSeverities = new Counts();
+    private final Counts secretTypes = new Counts();
+
+    public SecurityAggregator add(DependabotAlert alert) {
+        SecurityAdvisory advisory = alert.getSecurityAdvisory();
+        dependabotBySeverity[Severity.parse(advisory != null ? advisory.getSeverity() : null).ordinal()]++;
+        dependabotTotal++;
+
+        PackageInfo packageInfo = alert.getDependency() != null ? alert.getDependency().getPackageInfo() : null;
+        packages.increment(packageInfo != null ? packageInfo.getName() : null);
+        ecosystems.increment(packageInfo != null ? packageInfo.getEcosystem() : null);
+        return this;
+    }
+
+    public SecurityAggregator add(SecretScanningAlert alert) {
+        secretScanningTotal++;
+        secretTypes.increment(alert.getSecretTypeDisplayName());
+        return this;
+    }
+
+    public SecurityAggregator add(CodeScanningAlert alert) {
+        codeScanningTotal++;
+        CodeScanningAlert.Rule rule = alert.getRule();
+        if (rule != null) {
+            rules.increment(rule.getName());
+            ruleSeverities.increment(rule.getSeverity());
+        }
+        return this;
+    }
+
+    /**
+     * Tally every alert of a repository in one pass per category
+     */
+    public SecurityAggregator addAll(RepositoryAlerts alerts) {
+        for (DependabotAlert alert : alerts.getDependabotAlerts()) {
+            add(alert);
+        }
+        for (SecretScanningAlert alert : alerts.getSecretScanningAlerts()) {
+            add(alert);
+        }
+        for (CodeScanningAlert alert : alerts.getCodeScanningAlerts()) {
+            add(alert);
+        }
+        return this;
+    }
+
+    /**
+     * Fold another aggregate into this one
+     */
+    public SecurityAggregator merge(SecurityAggregator other) {
+        for (int i = 0; i < dependabotBySeverity.length; i++) {
+            dependabotBySeverity[i] += other.dependabotBySeverity[i];
+        }
+        dependabotTotal += other.dependabotTotal;
+        secretScanningTotal += other.secretScanningTotal;
+        codeScanningTotal += other.codeScanningTotal;
+
+        packages.merge(other.packages);
+        ecosystems.merge(other.ecosystems);
+        rules.merge(other.rules);
+        ruleSeverities.merge(other.ruleSeverities);
+        secretTypes.merge(other.secretTypes);
+        return this;
+    }
+
+    public long getSeverityCount(Severity severity) {
+        return dependabotBySeverity[severity.ordinal()];
+    }
+
+    public long getDependabotTotal() {
+        return dependabotTotal;
+    }
+
+    public long getSecretScanningTotal() {
+        return secretScanningTotal;
+    }
+
+    public long getCodeScanningTotal() {
+        return codeScanningTotal;
+    }
+
+    public long getTotal() {
+        return dependabotTotal + secretScanningTotal + codeScanningTotal;
+    }
+
+    /** Dependabot alerts per package name */
+    public Counts getPackageCounts() {
+        return packages;
+    }
+
+    /** Dependabot alerts per package ecosystem */
+    public Counts getEcosystemCounts() {
+        return ecosystems;
+    }
+
+    /** Code scanning alerts per rule name */
+    public Counts getRuleCounts() {
+        return rules;
+    }
+
+    /** Code scanning alerts per rule severity */
+    public Counts getRuleSeverityCounts() {
+        return ruleSeverities;
+    }
+
+    /** Secret scanning alerts per secret type */
+    public Counts getSecretTypeCounts() {
+        return secretTypes;
+    }
+
+    /**
+     * Open-addressing String -> long counter with linear probing. Missing
+     * keys (null) are counted under "unknown".
+     */
+    public static class Counts {
+
+        public interface Visitor {
+            void visit(String key, long count);
+        }
+
+        private static final String UNKNOWN = "unknown";
+
+        private String[] keys = new String[16];
+        private long[] counts = new long[16];
+        private int size;
+
+        public void increment(String key) {
+            add(key, 1);
+        }
+
+        public void add(String key, long delta) {
+            if (key == null) {
+                key = UNKNOWN;
+            }
+            int slot = slot(keys, key);
+            if (keys[slot] == null) {
+                keys[slot] = key;
+                size++;
+                counts[slot] = delta;
+                if (size * 4 > keys.length * 3) {
+                    resize();
+                }
+            } else {
+                counts[slot] += delta;
+            }
+        }
+
+        public long get(String key) {
+            int slot = slot(keys, key != null ? key : UNKNOWN);
+            return keys[slot] != null ? counts[slot] : 0;
+        }
+
+        /** Number of distinct keys */
+        public int size() {
+            return size;
+        }
+
+        public void merge(Counts other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.keys[i] != null) {
+                    add(other.keys[i], other.counts[i]);
+                }
+            }
+        }
+
+        /**
+         * Visit every key in no particular order
+         */
+        public void forEach(Visitor visitor) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    visitor.visit(keys[i], counts[i]);
+                }
+            }
+        }
+
+        /**
+         * Keys ordered by count, highest first
+         */
+        public List<String> top(int limit) {
+            Integer[] order = new Integer[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    order[n++] = i;
+                }
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+
+            List<String> top = new ArrayList<>(Math.min(limit, size));
+            for (int i = 0; i < order.length && i < limit; i++) {
+                top.add(keys[order[i]]);
+            }
+            return top;
+        }
+
+        private void resize() {
+            String[] oldKeys = keys;
+            long[] oldCounts = counts;
+            keys = new String[oldKeys.length * 2];
+            counts = new long[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int slot(String[] keys, String key) {
+            int mask = keys.length - 1;
+            int hash = key.hashCode();
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != null && !keys[slot].equals(key)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
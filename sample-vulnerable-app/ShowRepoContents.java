@@ -28,90 +28,44 @@ public class ShowRepoContents {
             System.out.println("Default Branch: " + repository.getDefaultBranch());
             System.out.println();
             
-            // Get repository contents using GitHub API directly
+            // One recursive git tree request lists every file, instead of one /contents request per directory
             System.out.println("=== REPOSITORY CONTENTS (Files & Directories) ===");
             
-            OkHttpClient httpClient = new OkHttpClient();
-            String contentsUrl = "https://api.github.com/repos/" + owner + "/" + repo + "/contents";
+            ConditionalRequestCache httpCache = ConditionalRequestCache.getDefault();
+            OkHttpClient httpClient = GitHubHttpTransport.shared();
+            RepositoryTree repositoryTree = new RepositoryTree(TOKEN);
+            RepositoryTree.Tree tree = repositoryTree.fetch(owner, repo, repository.getDefaultBranch());
             
-            Request request = new Request.Builder()
-                .url(contentsUrl)
-                .addHeader("Authorization", "Bearer " + TOKEN)
-                .addHeader("Accept", "application/vnd.github.v3+json")
-                .build();
+            System.out.println("Tree " + tree.getSha() + ": " + tree.getEntries().size() + " entries, " +
+                tree.getFiles().size() + " files, " + tree.getTotalSize() + " bytes");
+            System.out.println();
             
-            Response response = httpClient.newCall(request).execute();
-            if (response.isSuccessful()) {
-                String responseBody = response.body().string();
-                System.out.println("Root Directory Contents JSON:");
-                
-                // Parse and pretty print the JSON
-                Object jsonObject = mapper.readValue(responseBody, Object.class);
-                String prettyJson = mapper.writeValueAsString(jsonObject);
-                System.out.println(prettyJson);
-                System.out.println();
-                
-                // Also show a summary
-                System.out.println("=== REPOSITORY STRUCTURE SUMMARY ===");
-                com.fasterxml.jackson.databind.JsonNode rootNode = mapper.readTree(responseBody);
-                
-                if (rootNode.isArray()) {
-                    System.out.println("Files and directories in root:");
-                    for (com.fasterxml.jackson.databind.JsonNode item : rootNode) {
-                        String name = item.get("name").asText();
-                        String type = item.get("type").asText();
-                        int size = item.has("size") ? item.get("size").asInt() : 0;
-                        String downloadUrl = item.has("download_url") && !item.get("download_url").isNull() 
-                            ? item.get("download_url").asText() : "N/A (directory)";
-                        
-                        System.out.println("- " + name + " (" + type + ")");
-                        if (type.equals("file")) {
-                            System.out.println("  Size: " + size + " bytes");
-                            System.out.println("  Download URL: " + downloadUrl);
-                        }
-                        System.out.println();
-                    }
+            System.out.println("=== REPOSITORY STRUCTURE SUMMARY ===");
+            System.out.println("Files and directories in root:");
+            for (RepositoryTree.Entry entry : tree.list("")) {
+                System.out.println("- " + entry.getName() + " (" + (entry.isDirectory() ? "dir" : "file") + ")");
+                if (entry.isFile()) {
+                    System.out.println("  Size: " + entry.getSize() + " bytes");
+                    System.out.println("  Download URL: https://raw.githubusercontent.com/" + owner + "/" + repo + "/" +
+                        repository.getDefaultBranch() + "/" + entry.getPath());
                 }
-                
-                // Get sample-vulnerable-app directory contents
-                System.out.println("=== SAMPLE-VULNERABLE-APP DIRECTORY CONTENTS ===");
-                String sampleAppUrl = contentsUrl + "/sample-vulnerable-app";
-                
-                Request sampleAppRequest = new Request.Builder()
-                    .url(sampleAppUrl)
-                    .addHeader("Authorization", "Bearer " + TOKEN)
-                    .addHeader("Accept", "application/vnd.github.v3+json")
-                    .build();
-                
-                Response sampleAppResponse = httpClient.newCall(sampleAppRequest).execute();
-                if (sampleAppResponse.isSuccessful()) {
-                    String sampleAppBody = sampleAppResponse.body().string();
-                    com.fasterxml.jackson.databind.JsonNode sampleAppNode = mapper.readTree(sampleAppBody);
-                    
-                    if (sampleAppNode.isArray()) {
-                        System.out.println("Files in sample-vulnerable-app/:");
-                        for (com.fasterxml.jackson.databind.JsonNode item : sampleAppNode) {
-                            String name = item.get("name").asText();
-                            String type = item.get("type").asText();
-                            int size = item.has("size") ? item.get("size").asInt() : 0;
-                            
-                            System.out.println("- " + name + " (" + type + ")");
-                            if (type.equals("file")) {
-                                System.out.println("  Size: " + size + " bytes");
-                            }
-                        }
+                System.out.println();
+            }
+            
+            System.out.println("=== SAMPLE-VULNERABLE-APP DIRECTORY CONTENTS ===");
+            List<RepositoryTree.Entry> sampleApp = tree.list("sample-vulnerable-app");
+            if (sampleApp.isEmpty()) {
+                System.out.println("No sample-vulnerable-app directory in " + repository.getDefaultBranch());
+            } else {
+                System.out.println("Files in sample-vulnerable-app/:");
+                for (RepositoryTree.Entry entry : sampleApp) {
+                    System.out.println("- " + entry.getName() + " (" + (entry.isDirectory() ? "dir" : "file") + ")");
+                    if (entry.isFile()) {
+                        System.out.println("  Size: " + entry.getSize() + " bytes");
                     }
-                } else {
-                    System.out.println("Could not fetch sample-vulnerable-app contents: " + sampleAppResponse.code());
                 }
-                
-            } else {
-                System.out.println("Failed to fetch repository contents: " + response.code());
-                System.out.println("Response: " + response.body().string());
             }
             
-            response.close();
-            
             // Show repository statistics
             System.out.println("\n=== REPOSITORY STATISTICS ===");
             System.out.println("Total size: " + repository.getSize() + " KB");
@@ -142,6 +96,10 @@ public class ShowRepoContents {
             }
             languagesResponse.close();
             
+            System.out.println("\n" + repositoryTree.stats());
+            System.out.println(httpCache.stats());
+            System.out.println(AdaptiveConcurrencyLimiter.getDefault().stats());
+            
             System.out.println("\n=== REPOSITORY ASSETS ANALYSIS COMPLETE ===");
             
         } catch (Exception e) {
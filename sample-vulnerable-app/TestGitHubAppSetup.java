@@ -21,7 +21,7 @@ public class TestGitHubAppSetup {
     private static final String GITHUB_API_BASE = "https://api.github.com";
     
     public TestGitHubAppSetup() {
-        this.httpClient = new OkHttpClient();
+        this.httpClient = GitHubHttpTransport.shared();
         this.mapper = new ObjectMapper();
     }
     
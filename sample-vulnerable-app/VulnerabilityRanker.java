@@ -0,0 +1,228 @@
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * Org-wide top-N ranking of open Dependabot alerts.
+ *
+ * Alerts are ranked from the JSON of the Dependabot alerts API, as
+ * GHASAlertStreams returns it with JsonNode as the element type. The typed
+ * DependabotAlert model drops the CVSS score, created_at and the dependency
+ * scope, so a ranking built from it would come down to severity alone.
+ *
+ * Alerts are offered one at a time and kept in a min-heap of at most N
+ * candidates; an alert that does not beat the weakest kept one is dropped
+ * immediately. Memory is O(N) however many repositories are streamed
+ * through, and rankers filled by parallel workers combine with merge().
+ *
+ * Ranking, most urgent first:
+ *   1. CVSS score (when GitHub does not report one, a score typical of the
+ *      advisory severity is used)
+ *   2. advisory severity
+ *   3. exposure: public repository, runtime (not development) dependency
+ *   4. age: the longer an alert has been open, the higher it ranks
+ * Ties are broken by repository and alert number so results are stable.
+ */
+public class VulnerabilityRanker {
+
+    /**
+     * What is kept of a ranked alert; the alert itself is not retained
+     */
+    public static class Candidate {
+        String repository;
+        int number;
+        String packageName;
+        String advisoryId;
+        String summary;
+        SecurityAggregator.Severity severity;
+        /** Reported CVSS score, NaN when none was reported */
+        double cvssScore;
+        /** Ranking score: the reported one, or one typical of the severity */
+        double rankScore;
+        /** 0 (private repository, development dependency) to 3 (public, runtime) */
+        int exposure;
+        long createdAtMillis;
+
+        public String getRepository() {
+            return repository;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        /** CVE ID, or the GHSA ID for advisories without a CVE */
+        public String getAdvisoryId() {
+            return advisoryId;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+
+        public SecurityAggregator.Severity getSeverity() {
+            return severity;
+        }
+
+        /** Reported CVSS score, NaN when GitHub reported none */
+        public double getCvssScore() {
+            return cvssScore;
+        }
+
+        public boolean hasCvssScore() {
+            return !Double.isNaN(cvssScore);
+        }
+
+        /** The CVSS score for display, "n/a" when none was reported */
+        public String getCvssText() {
+            return hasCvssScore() ? String.format("%.1f", cvssScore) : "n/a";
+        }
+
+        public int getExposure() {
+            return exposure;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s #%d %s (%s, %s, CVSS %s): %s",
+                repository, number, packageName, advisoryId, severity, getCvssText(), summary);
+        }
+    }
+
+    /** Most urgent first */
+    public static final Comparator<Candidate> URGENCY = Comparator
+        .comparingDouble((Candidate c) -> c.rankScore).reversed()
+        .thenComparing(c -> c.severity)
+        .thenComparing(Comparator.comparingInt((Candidate c) -> c.exposure).reversed())
+        .thenComparingLong(c -> c.createdAtMillis)
+        .thenComparing(c -> c.repository)
+        .thenComparingInt(c -> c.number);
+
+    private final int limit;
+
+    /** Least urgent on top, so it is the one evicted */
+    private final PriorityQueue<Candidate> heap;
+
+    public VulnerabilityRanker(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1: " + limit);
+        }
+        this.limit = limit;
+        this.heap = new PriorityQueue<>(limit + 1, URGENCY.reversed());
+    }
+
+    /**
+     * Offer an alert as returned by the Dependabot alerts API. Alerts that
+     * are not open (fixed, dismissed) are ignored.
+     */
+    public VulnerabilityRanker offer(String repository, boolean publicRepository, JsonNode alert) {
+        String state = alert.path("state").asText(null);
+        if (state == null || "open".equals(state)) {
+            offer(candidate(repository, publicRepository, alert));
+        }
+        return this;
+    }
+
+    /**
+     * Offer every alert of a repository; the stream is consumed but not closed
+     */
+    public VulnerabilityRanker offerAll(String repository, boolean publicRepository, Stream<JsonNode> alerts) {
+        alerts.forEachOrdered(alert -> offer(repository, publicRepository, alert));
+        return this;
+    }
+
+    /**
+     * Fold the candidates of another ranker into this one
+     */
+    public VulnerabilityRanker merge(VulnerabilityRanker other) {
+        for (Candidate candidate : other.heap) {
+            offer(candidate);
+        }
+        return this;
+    }
+
+    /**
+     * The kept candidates, most urgent first
+     */
+    public List<Candidate> top() {
+        List<Candidate> ranked = new ArrayList<>(heap);
+        ranked.sort(URGENCY);
+        return Collections.unmodifiableList(ranked);
+    }
+
+    private void offer(Candidate candidate) {
+        if (heap.size() < limit) {
+            heap.add(candidate);
+        } else if (URGENCY.compare(candidate, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(candidate);
+        }
+    }
+
+    private static Candidate candidate(String repository, boolean publicRepository, JsonNode alert) {
+        JsonNode advisory = alert.path("security_advisory");
+
+        Candidate candidate = new Candidate();
+        candidate.repository = repository;
+        candidate.number = alert.path("number").asInt();
+        candidate.packageName = alert.path("dependency").path("package").path("name").asText("unknown");
+        candidate.advisoryId = advisory.hasNonNull("cve_id")
+            ? advisory.get("cve_id").asText()
+            : advisory.path("ghsa_id").asText(null);
+        candidate.summary = advisory.path("summary").asText("");
+
+        String severity = advisory.path("severity").asText(null);
+        if (severity == null) {
+            severity = alert.path("security_vulnerability").path("severity").asText(null);
+        }
+        candidate.severity = SecurityAggregator.Severity.parse(severity);
+
+        // GitHub reports 0 for advisories without a CVSS vector
+        JsonNode score = advisory.path("cvss").path("score");
+        candidate.cvssScore = score.isNumber() && score.asDouble() > 0 ? score.asDouble() : Double.NaN;
+        candidate.rankScore = candidate.hasCvssScore() ? candidate.cvssScore : typicalScore(candidate.severity);
+
+        boolean runtime = !"development".equals(alert.path("dependency").path("scope").asText(null));
+        candidate.exposure = (publicRepository ? 2 : 0) + (runtime ? 1 : 0);
+        candidate.createdAtMillis = parseTime(alert.path("created_at").asText(null));
+        return candidate;
+    }
+
+    /**
+     * Midpoint of the CVSS v3 range of each severity
+     */
+    private static double typicalScore(SecurityAggregator.Severity severity) {
+        switch (severity) {
+            case CRITICAL: return 9.5;
+            case HIGH: return 8.0;
+            case MEDIUM: return 5.5;
+            case LOW: return 2.0;
+            default: return 0.0;
+        }
+    }
+
+    /**
+     * Epoch millis, or Long.MAX_VALUE (newest possible) when unknown
+     */
+    private static long parseTime(String timestamp) {
+        if (timestamp == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return Instant.parse(timestamp).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
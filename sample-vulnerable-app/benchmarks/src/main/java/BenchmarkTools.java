@@ -0,0 +1,144 @@
+import com.example.ghas.benchmarks.Tools;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.security.ghas.model.CodeScanningAlert;
+import com.github.security.ghas.model.DependabotAlert;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default-package side of the benchmark module: Tools implemented with
+ * the tool classes compiled from the parent directory, fed with the
+ * recorded pages under src/main/resources/fixtures
+ */
+public class BenchmarkTools implements Tools {
+
+    private static final long JWT_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(9);
+
+    private static final String DEPENDABOT_PAGE = "/fixtures/dependabot-alerts-page.json";
+    private static final String CODE_SCANNING_PAGE = "/fixtures/code-scanning-alerts-page.json";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public BenchmarkTools() {
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override
+    public byte[] dependabotPage() {
+        return fixture(DEPENDABOT_PAGE);
+    }
+
+    @Override
+    public List<DependabotAlert> dependabotAlerts(int count) {
+        byte[] page = fixture(DEPENDABOT_PAGE);
+        List<DependabotAlert> alerts = new ArrayList<>(count);
+        while (alerts.size() < count) {
+            List<DependabotAlert> decoded = read(page, DependabotAlert.class);
+            alerts.addAll(decoded.subList(0, Math.min(decoded.size(), count - alerts.size())));
+        }
+        return alerts;
+    }
+
+    @Override
+    public List<CodeScanningAlert> codeScanningAlerts() {
+        return read(fixture(CODE_SCANNING_PAGE), CodeScanningAlert.class);
+    }
+
+    @Override
+    public PageDecoder dependabotPageDecoder(boolean interning) {
+        ObjectMapper decoderMapper = new ObjectMapper();
+        if (interning) {
+            // A fresh interner per decoder, so no state leaks between benchmarks
+            new AdvisoryInterner(AdvisoryInterner.DEFAULT_MAX_ENTRIES).register(decoderMapper);
+        }
+        AlertPageDecoder<DependabotAlert> decoder = new AlertPageDecoder<>(decoderMapper, DependabotAlert.class);
+        return (page, blackhole) -> decoder.forEach(new ByteArrayInputStream(page), blackhole::consume);
+    }
+
+    @Override
+    public Object aggregate(List<DependabotAlert> alerts) {
+        SecurityAggregator aggregator = new SecurityAggregator();
+        for (DependabotAlert alert : alerts) {
+            aggregator.add(alert);
+        }
+        return aggregator;
+    }
+
+    @Override
+    public Object repositoryAlerts(String owner, String repo, List<DependabotAlert> dependabot,
+                                   List<CodeScanningAlert> codeScanning) {
+        RepositoryAlerts alerts = new RepositoryAlerts(owner, repo);
+        alerts.setDependabotAlerts(dependabot);
+        alerts.setCodeScanningAlerts(codeScanning);
+        return alerts;
+    }
+
+    @Override
+    public void writeReport(Object repositoryAlerts, OutputStream out) throws IOException {
+        try (AlertReportWriter writer = new AlertReportWriter(out, AlertReportWriter.Format.NDJSON, false)) {
+            writer.write((RepositoryAlerts) repositoryAlerts);
+        }
+    }
+
+    @Override
+    public JwtSigner jwtSigner(String appId, String privateKeyPath) throws Exception {
+        GitHubAppJWTAuth auth = new GitHubAppJWTAuth(appId, privateKeyPath);
+        PrivateKey privateKey = GitHubAppJWTAuth.loadPrivateKey(privateKeyPath);
+        return new JwtSigner() {
+            @Override
+            public String parseKeyAndSign() throws Exception {
+                return sign(GitHubAppJWTAuth.loadPrivateKey(privateKeyPath));
+            }
+
+            @Override
+            public String signWithParsedKey() {
+                return sign(privateKey);
+            }
+
+            @Override
+            public String cachedToken() {
+                return auth.getJWT();
+            }
+
+            private String sign(PrivateKey key) {
+                long now = System.currentTimeMillis();
+                return GitHubAppJWTAuth.signJWT(appId, key, now, now + JWT_LIFETIME_MILLIS);
+            }
+        };
+    }
+
+    private static byte[] fixture(String resource) {
+        try (InputStream in = BenchmarkTools.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture: " + resource);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> List<T> read(byte[] page, Class<T> type) {
+        try {
+            return mapper.readValue(page, mapper.getTypeFactory().constructCollectionType(List.class, type));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.ghas.benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.security.ghas.model.DependabotAlert;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding the recorded page of 100 Dependabot alerts
+ * (fixtures/dependabot-alerts-page.json).
+ *
+ * databindFromString is what GHASClient does (body as String, bound into a
+ * List); alertPageDecoder is the AlertPageDecoder used by GHASAlertStreams,
+ * without and with the AdvisoryInterner. Run with -prof gc to compare
+ * allocation per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertPageDeserializationBenchmark {
+
+    private byte[] page;
+    private ObjectMapper mapper;
+    private JavaType listType;
+    private Tools.PageDecoder decoder;
+    private Tools.PageDecoder interningDecoder;
+
+    @Setup
+    public void setup() {
+        Tools tools = Tools.load();
+        page = tools.dependabotPage();
+        mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        listType = mapper.getTypeFactory().constructCollectionType(List.class, DependabotAlert.class);
+        decoder = tools.dependabotPageDecoder(false);
+        interningDecoder = tools.dependabotPageDecoder(true);
+    }
+
+    @Benchmark
+    public List<DependabotAlert> databindFromString() throws IOException {
+        return mapper.readValue(new String(page, StandardCharsets.UTF_8), listType);
+    }
+
+    @Benchmark
+    public List<DependabotAlert> databindFromBytes() throws IOException {
+        return mapper.readValue(page, listType);
+    }
+
+    @Benchmark
+    public JsonNode treeModel() throws IOException {
+        return mapper.readTree(page);
+    }
+
+    @Benchmark
+    public int alertPageDecoder(Blackhole blackhole) throws IOException {
+        return decoder.decode(page, blackhole);
+    }
+
+    @Benchmark
+    public int alertPageDecoderInterning(Blackhole blackhole) throws IOException {
+        return interningDecoder.decode(page, blackhole);
+    }
+}
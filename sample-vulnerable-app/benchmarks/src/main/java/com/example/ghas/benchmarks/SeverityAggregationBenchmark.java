@@ -0,0 +1,84 @@
+package com.example.ghas.benchmarks;
+
+import com.github.security.ghas.model.DependabotAlert;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Severity and package tallies over Dependabot alerts, the recorded page
+ * decoded as often as alertCount needs.
+ *
+ * boxedHashMaps is the HashMap getOrDefault(...) + 1 loop AnalyzeGHASProject
+ * used to run, streamPerSeverity the filter/count pass per severity of
+ * GHASClientWithAppAuth, and securityAggregator the single pass of
+ * SecurityAggregator (enum-indexed long[] plus an open-addressing
+ * String -> long map).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeverityAggregationBenchmark {
+
+    @Param({"100", "10000"})
+    public int alertCount;
+
+    private Tools tools;
+    private List<DependabotAlert> alerts;
+
+    @Setup
+    public void setup() {
+        tools = Tools.load();
+        alerts = tools.dependabotAlerts(alertCount);
+    }
+
+    @Benchmark
+    public void boxedHashMaps(Blackhole blackhole) {
+        Map<String, Integer> severityCount = new HashMap<>();
+        Map<String, Integer> packageCount = new HashMap<>();
+
+        for (DependabotAlert alert : alerts) {
+            String severity = alert.getSecurityAdvisory() != null ? alert.getSecurityAdvisory().getSeverity() : "unknown";
+            severityCount.put(severity, severityCount.getOrDefault(severity, 0) + 1);
+
+            String packageName = alert.getDependency() != null && alert.getDependency().getPackageInfo() != null
+                ? alert.getDependency().getPackageInfo().getName() : "Unknown";
+            packageCount.put(packageName, packageCount.getOrDefault(packageName, 0) + 1);
+        }
+
+        blackhole.consume(severityCount);
+        blackhole.consume(packageCount);
+    }
+
+    @Benchmark
+    public void streamPerSeverity(Blackhole blackhole) {
+        blackhole.consume(alerts.stream()
+            .filter(alert -> alert.getSecurityAdvisory() != null && "critical".equals(alert.getSecurityAdvisory().getSeverity()))
+            .count());
+        blackhole.consume(alerts.stream()
+            .filter(alert -> alert.getSecurityAdvisory() != null && "high".equals(alert.getSecurityAdvisory().getSeverity()))
+            .count());
+    }
+
+    @Benchmark
+    public Object securityAggregator() {
+        return tools.aggregate(alerts);
+    }
+}
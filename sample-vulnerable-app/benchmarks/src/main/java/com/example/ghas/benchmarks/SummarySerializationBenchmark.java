@@ -0,0 +1,87 @@
+package com.example.ghas.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.security.ghas.model.CodeScanningAlert;
+import com.github.security.ghas.model.DependabotAlert;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing the RepositoryAlerts of one repository (the recorded 100
+ * Dependabot and 60 code scanning alerts), as ShowJSONResponse and GHASClientWithAppAuth
+ * used to print it: writeValueAsString with INDENT_OUTPUT. The variants
+ * show what indentation and the intermediate String cost; reportWriter is
+ * the AlertReportWriter that --report now uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SummarySerializationBenchmark {
+
+    /** Discards output so only serialization is measured */
+    private static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private Tools tools;
+    private Object summary;
+    private ObjectMapper indentingMapper;
+    private ObjectWriter compactWriter;
+
+    @Setup
+    public void setup() {
+        tools = Tools.load();
+        List<DependabotAlert> dependabotAlerts = tools.dependabotAlerts(100);
+        List<CodeScanningAlert> codeScanningAlerts = tools.codeScanningAlerts();
+        summary = tools.repositoryAlerts("dagarachit", "ghas-dependabot", dependabotAlerts, codeScanningAlerts);
+
+        indentingMapper = new ObjectMapper();
+        indentingMapper.enable(SerializationFeature.INDENT_OUTPUT);
+        compactWriter = new ObjectMapper().writer();
+    }
+
+    @Benchmark
+    public String indentedString() throws JsonProcessingException {
+        return indentingMapper.writeValueAsString(summary);
+    }
+
+    @Benchmark
+    public String compactString() throws JsonProcessingException {
+        return compactWriter.writeValueAsString(summary);
+    }
+
+    @Benchmark
+    public void indentedStream() throws IOException {
+        indentingMapper.writeValue(NULL_OUTPUT, summary);
+    }
+
+    @Benchmark
+    public void reportWriter() throws IOException {
+        tools.writeReport(summary, NULL_OUTPUT);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.ghas.benchmarks;
+
+import com.github.security.ghas.model.CodeScanningAlert;
+import com.github.security.ghas.model.DependabotAlert;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The GHAS tool classes under benchmark.
+ *
+ * The tools live in the default package, which code in a named package
+ * cannot refer to, while JMH only accepts benchmarks in a named package.
+ * The module compiles the tool sources from the parent directory together
+ * with BenchmarkTools, a default-package implementation of this interface
+ * that calls them directly. Benchmarks look it up once in their setup, so
+ * the measured code is an interface call into the real classes.
+ *
+ * The alert data comes from checked-in pages recorded from the GitHub REST
+ * API, so every run decodes the same bytes without network access.
+ */
+public interface Tools {
+
+    static Tools load() {
+        try {
+            return (Tools) Class.forName("BenchmarkTools").newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchmarkTools is not on the classpath", e);
+        }
+    }
+
+    /**
+     * The recorded page of 100 Dependabot alerts,
+     * src/main/resources/fixtures/dependabot-alerts-page.json
+     */
+    byte[] dependabotPage();
+
+    /**
+     * The recorded Dependabot alerts bound to the GHASClient model, the page
+     * decoded again until there are count alerts
+     */
+    List<DependabotAlert> dependabotAlerts(int count);
+
+    /**
+     * The recorded page of 60 code scanning alerts bound to the GHASClient
+     * model, src/main/resources/fixtures/code-scanning-alerts-page.json
+     */
+    List<CodeScanningAlert> codeScanningAlerts();
+
+    /** AlertPageDecoder for Dependabot pages, with or without AdvisoryInterner */
+    PageDecoder dependabotPageDecoder(boolean interning);
+
+    /** A SecurityAggregator filled with the alerts */
+    Object aggregate(List<DependabotAlert> alerts);
+
+    /** A RepositoryAlerts holding the alerts, as the tools serialize it */
+    Object repositoryAlerts(String owner, String repo, List<DependabotAlert> dependabot,
+                            List<CodeScanningAlert> codeScanning);
+
+    /** Write a RepositoryAlerts with an NDJSON AlertReportWriter */
+    void writeReport(Object repositoryAlerts, OutputStream out) throws IOException;
+
+    /** GitHubAppJWTAuth signing with a PKCS#8 key file */
+    JwtSigner jwtSigner(String appId, String privateKeyPath) throws Exception;
+
+    interface PageDecoder {
+        /** Decode a page alert by alert into the blackhole; returns the number of alerts */
+        int decode(byte[] page, Blackhole blackhole) throws IOException;
+    }
+
+    interface JwtSigner {
+        /** Read and parse the key file, then sign: the cost before the key was kept parsed */
+        String parseKeyAndSign() throws Exception;
+
+        /** Sign with the parsed key: the cost of each refresh */
+        String signWithParsedKey();
+
+        /** GitHubAppJWTAuth.getJWT(): the cost between refreshes */
+        String cachedToken();
+    }
+}